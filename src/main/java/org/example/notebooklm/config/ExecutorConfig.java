@@ -0,0 +1,125 @@
+package org.example.notebooklm.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pools used outside the Tomcat request threads.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Runs embedding batches for {@link org.example.notebooklm.service.EmbeddingPipeline}.
+     * The pool size caps outstanding Gemini calls across all uploads; each upload
+     * additionally bounds its own in-flight window.
+     */
+    @Bean(name = "embeddingExecutor")
+    public ThreadPoolTaskExecutor embeddingExecutor(
+            @Value("${ingestion.embedding.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("embedding-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs streamed answers so the SSE connection does not hold a Tomcat thread
+     * while Gemini generates. Requests beyond the queue are rejected (503).
+     */
+    @Bean(name = "answerStreamExecutor")
+    public ThreadPoolTaskExecutor answerStreamExecutor(
+            @Value("${ask.stream.max-concurrent:16}") int maxConcurrent,
+            @Value("${ask.stream.queue-capacity:64}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("answer-stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the vector and full-text legs of hybrid retrieval side by side.
+     * Each leg holds a database connection while it runs.
+     */
+    @Bean(name = "retrievalExecutor")
+    public ThreadPoolTaskExecutor retrievalExecutor(
+            @Value("${retrieval.hybrid.parallelism:8}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("retrieval-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Single thread for schema maintenance (index builds), so DDL runs one statement at a time.
+     */
+    @Bean(name = "maintenanceExecutor")
+    public ThreadPoolTaskExecutor maintenanceExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("maintenance-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Loads document embeddings into the in-memory vector store. The small queue keeps
+     * a burst of cold documents from piling up; the dropped ones stay on pgvector.
+     */
+    @Bean(name = "vectorStoreExecutor")
+    public ThreadPoolTaskExecutor vectorStoreExecutor(
+            @Value("${vector-store.memory.loader-threads:2}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(32);
+        executor.setThreadNamePrefix("vector-store-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * One long-running thread per ingestion worker; each polls the job table on its own.
+     * Interrupted on shutdown, which rolls back the job in progress so another node retries it.
+     */
+    @Bean(name = "ingestionExecutor")
+    public ThreadPoolTaskExecutor ingestionExecutor(
+            @Value("${ingestion.jobs.workers:2}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, workers));
+        executor.setMaxPoolSize(Math.max(1, workers));
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("ingestion-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Strips PDF page ranges in parallel (see {@link org.example.notebooklm.util.PdfTextExtractor}).
+     * Sized to the CPU count by default, since text extraction is CPU-bound. Shared by all
+     * ingestion jobs: tasks extract one range each and never wait for a slow reader.
+     */
+    @Bean(name = "extractionExecutor")
+    public ThreadPoolTaskExecutor extractionExecutor(
+            @Value("${ingestion.extraction.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("pdf-extract-");
+        executor.initialize();
+        return executor;
+    }
+}
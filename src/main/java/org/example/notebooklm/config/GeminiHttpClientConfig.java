@@ -0,0 +1,83 @@
+package org.example.notebooklm.config;
+
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * One pooled, keep-alive HTTP client shared by all Gemini calls.
+ * Each endpoint gets its own RestTemplate on top of the shared pool, so
+ * embedding and generation can use different response timeouts.
+ */
+@Configuration
+public class GeminiHttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager geminiConnectionManager(
+            @Value("${gemini.http.pool.max-total:64}") int maxTotal,
+            @Value("${gemini.http.pool.max-per-route:64}") int maxPerRoute,
+            @Value("${gemini.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${gemini.http.pool.time-to-live-seconds:300}") long timeToLiveSeconds) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setTimeToLive(TimeValue.ofSeconds(timeToLiveSeconds))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient geminiHttpClient(PoolingHttpClientConnectionManager geminiConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(geminiConnectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+    }
+
+    @Bean(name = "geminiEmbeddingRestTemplate")
+    public RestTemplate geminiEmbeddingRestTemplate(
+            CloseableHttpClient geminiHttpClient,
+            @Value("${gemini.http.embedding.response-timeout-ms:30000}") long responseTimeoutMs,
+            @Value("${gemini.http.pool.lease-timeout-ms:5000}") long leaseTimeoutMs) {
+        return restTemplate(geminiHttpClient, responseTimeoutMs, leaseTimeoutMs);
+    }
+
+    @Bean(name = "geminiAnswerRestTemplate")
+    public RestTemplate geminiAnswerRestTemplate(
+            CloseableHttpClient geminiHttpClient,
+            @Value("${gemini.http.answer.response-timeout-ms:120000}") long responseTimeoutMs,
+            @Value("${gemini.http.pool.lease-timeout-ms:5000}") long leaseTimeoutMs) {
+        return restTemplate(geminiHttpClient, responseTimeoutMs, leaseTimeoutMs);
+    }
+
+    private RestTemplate restTemplate(HttpClient httpClient, long responseTimeoutMs, long leaseTimeoutMs) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(leaseTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                .build();
+
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        factory.setHttpContextFactory((method, uri) -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(requestConfig);
+            return context;
+        });
+        return new RestTemplate(factory);
+    }
+}
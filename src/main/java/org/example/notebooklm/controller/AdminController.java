@@ -0,0 +1,228 @@
+package org.example.notebooklm.controller;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.example.notebooklm.repository.HnswVectorStore;
+import org.example.notebooklm.repository.InMemoryVectorStore;
+import org.example.notebooklm.service.AnswerCache;
+import org.example.notebooklm.service.CachingEmbeddingService;
+import org.example.notebooklm.service.ChunkWriteBenchmarkService;
+import org.example.notebooklm.service.QuantizationReportService;
+import org.example.notebooklm.service.RetrievalService;
+import org.example.notebooklm.service.SectionService;
+import org.example.notebooklm.service.SemanticAnswerCache;
+import org.example.notebooklm.service.VectorEngineReportService;
+import org.example.notebooklm.service.VectorIndexService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operational endpoints: cache statistics and maintenance tasks.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*")
+public class AdminController {
+
+    private final CachingEmbeddingService embeddingCache;
+    private final PoolingHttpClientConnectionManager geminiConnectionManager;
+    private final AnswerCache answerCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final VectorIndexService vectorIndexService;
+    private final RetrievalService retrievalService;
+    private final QuantizationReportService quantizationReportService;
+    private final InMemoryVectorStore memoryVectorStore;
+    private final HnswVectorStore hnswVectorStore;
+    private final VectorEngineReportService vectorEngineReportService;
+    private final SectionService sectionService;
+    private final ChunkWriteBenchmarkService chunkWriteBenchmarkService;
+
+    public AdminController(CachingEmbeddingService embeddingCache,
+                           PoolingHttpClientConnectionManager geminiConnectionManager,
+                           AnswerCache answerCache,
+                           SemanticAnswerCache semanticAnswerCache,
+                           VectorIndexService vectorIndexService,
+                           RetrievalService retrievalService,
+                           QuantizationReportService quantizationReportService,
+                           InMemoryVectorStore memoryVectorStore,
+                           HnswVectorStore hnswVectorStore,
+                           VectorEngineReportService vectorEngineReportService,
+                           SectionService sectionService,
+                           ChunkWriteBenchmarkService chunkWriteBenchmarkService) {
+        this.embeddingCache = embeddingCache;
+        this.geminiConnectionManager = geminiConnectionManager;
+        this.answerCache = answerCache;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.vectorIndexService = vectorIndexService;
+        this.retrievalService = retrievalService;
+        this.quantizationReportService = quantizationReportService;
+        this.memoryVectorStore = memoryVectorStore;
+        this.hnswVectorStore = hnswVectorStore;
+        this.vectorEngineReportService = vectorEngineReportService;
+        this.sectionService = sectionService;
+        this.chunkWriteBenchmarkService = chunkWriteBenchmarkService;
+    }
+
+    @GetMapping("/embedding-cache")
+    public ResponseEntity<Map<String, Long>> embeddingCacheStats() {
+        return ResponseEntity.ok(embeddingCache.getStats());
+    }
+
+    @GetMapping("/answer-cache")
+    public ResponseEntity<Map<String, Long>> answerCacheStats() {
+        return ResponseEntity.ok(answerCache.getStats());
+    }
+
+    @DeleteMapping("/answer-cache")
+    public ResponseEntity<?> clearAnswerCache() {
+        answerCache.invalidateAll();
+        return ResponseEntity.ok(Map.of("message", "Answer cache cleared"));
+    }
+
+    /**
+     * Semantic cache hit rate and the histogram of best-match distances,
+     * used to tune {@code answer.semantic-cache.max-distance}.
+     */
+    @GetMapping("/semantic-cache")
+    public ResponseEntity<Map<String, Object>> semanticCacheStats() {
+        return ResponseEntity.ok(semanticAnswerCache.getStats());
+    }
+
+    @DeleteMapping("/semantic-cache")
+    public ResponseEntity<?> clearSemanticCache() {
+        semanticAnswerCache.invalidateAll();
+        return ResponseEntity.ok(Map.of("message", "Semantic cache cleared"));
+    }
+
+    /**
+     * Gemini connection pool usage. A non-zero {@code pending} means callers are
+     * waiting for a connection and the pool is saturated.
+     */
+    @GetMapping("/http-pool")
+    public ResponseEntity<Map<String, Object>> httpPoolStats() {
+        PoolStats stats = geminiConnectionManager.getTotalStats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("leased", stats.getLeased());
+        body.put("pending", stats.getPending());
+        body.put("available", stats.getAvailable());
+        body.put("max", stats.getMax());
+        body.put("saturated", stats.getPending() > 0);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Retrieval mode, fusion weights and average time of the vector and full-text legs.
+     */
+    @GetMapping("/retrieval")
+    public ResponseEntity<Map<String, Object>> retrievalStats() {
+        return ResponseEntity.ok(retrievalService.getHybridStats());
+    }
+
+    /**
+     * Documents held by the in-memory vector store, memory used against the budget,
+     * and how often a search was served from memory.
+     */
+    @GetMapping("/vector-store")
+    public ResponseEntity<Map<String, Object>> vectorStoreStats() {
+        return ResponseEntity.ok(memoryVectorStore.getStats());
+    }
+
+    @DeleteMapping("/vector-store")
+    public ResponseEntity<?> clearVectorStore() {
+        memoryVectorStore.invalidateAll();
+        return ResponseEntity.ok(Map.of("message", "In-memory vector store cleared"));
+    }
+
+    /**
+     * HNSW graphs held in memory (entries, tombstones, size) and snapshot/build counters.
+     */
+    @GetMapping("/hnsw")
+    public ResponseEntity<Map<String, Object>> hnswStats() {
+        return ResponseEntity.ok(hnswVectorStore.getStats());
+    }
+
+    /**
+     * Recall@k and latency of each retrieval engine on one document, against an exact
+     * pgvector scan. Builds the document's HNSW graph and loads it into memory if needed.
+     */
+    @GetMapping("/engines/report")
+    public ResponseEntity<Map<String, Object>> engineReport(
+            @RequestParam Long pdfId,
+            @RequestParam(defaultValue = "20") int samples,
+            @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(vectorEngineReportService.report(pdfId, Math.min(samples, 200), Math.min(k, 100)));
+    }
+
+    /**
+     * Recomputes the sections of a document for hierarchical retrieval, e.g. one ingested
+     * before sections existed.
+     */
+    @PostMapping("/sections/{pdfId}/rebuild")
+    public ResponseEntity<?> rebuildSections(@PathVariable Long pdfId) {
+        int sections = sectionService.rebuild(pdfId);
+        return ResponseEntity.ok(Map.of("pdfId", pdfId, "sections", sections));
+    }
+
+    /**
+     * Insert throughput of a synthetic document written through JPA, batched INSERT and COPY.
+     * Every run is rolled back.
+     */
+    @PostMapping("/benchmarks/chunk-writes")
+    public ResponseEntity<Map<String, Object>> chunkWriteBenchmark(
+            @RequestParam(defaultValue = "10000") int chunks) {
+        if (chunks < 1 || chunks > 100_000) {
+            return ResponseEntity.badRequest().body(Map.of("error", "chunks must be between 1 and 100000"));
+        }
+        return ResponseEntity.ok(chunkWriteBenchmarkService.run(chunks));
+    }
+
+    /**
+     * Indexes on pdf_chunks (validity, size) and the progress of a running build.
+     */
+    @GetMapping("/indexes")
+    public ResponseEntity<Map<String, Object>> indexes() {
+        return ResponseEntity.ok(vectorIndexService.describeIndexes());
+    }
+
+    /**
+     * Starts a concurrent build of the "hnsw" or "ivfflat" index; ingestion keeps running.
+     */
+    @PostMapping("/indexes/{type}/build")
+    public ResponseEntity<?> buildIndex(@PathVariable String type) {
+        return scheduleIndexTask(() -> vectorIndexService.scheduleBuild(type, false), "Index build started");
+    }
+
+    @PostMapping("/indexes/{type}/rebuild")
+    public ResponseEntity<?> rebuildIndex(@PathVariable String type) {
+        return scheduleIndexTask(() -> vectorIndexService.scheduleBuild(type, true), "Index rebuild started");
+    }
+
+    @DeleteMapping("/indexes/{type}")
+    public ResponseEntity<?> dropIndex(@PathVariable String type) {
+        return scheduleIndexTask(() -> vectorIndexService.scheduleDrop(type), "Index drop started");
+    }
+
+    /**
+     * Footprint of the full-precision, halfvec and binary representations and recall@k of
+     * the quantized two-stage search against an exact scan, over sampled chunks as queries.
+     */
+    @GetMapping("/quantization/report")
+    public ResponseEntity<Map<String, Object>> quantizationReport(
+            @RequestParam(defaultValue = "20") int samples,
+            @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(quantizationReportService.report(Math.min(samples, 200), Math.min(k, 100)));
+    }
+
+    private ResponseEntity<?> scheduleIndexTask(Runnable task, String message) {
+        try {
+            task.run();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("message", message));
+    }
+}
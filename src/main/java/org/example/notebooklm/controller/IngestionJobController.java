@@ -0,0 +1,55 @@
+package org.example.notebooklm.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.example.notebooklm.model.IngestionJobStatus;
+import org.example.notebooklm.service.IngestionJobService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Progress, listing and cancellation of queued PDF ingestions (see {@code POST /api/pdf/upload}).
+ */
+@RestController
+@RequestMapping("/api/jobs")
+@CrossOrigin(origins = "*")
+public class IngestionJobController {
+
+    private final IngestionJobService jobService;
+
+    public IngestionJobController(IngestionJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @Operation(summary = "List the most recent ingestion jobs, optionally by status")
+    @GetMapping
+    public ResponseEntity<?> listJobs(@RequestParam(value = "status", required = false) String status) {
+        IngestionJobStatus filter = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                filter = IngestionJobStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unknown job status: " + status));
+            }
+        }
+        List<Map<String, Object>> jobs = jobService.listJobs(filter).stream()
+                .map(jobService::toProgress)
+                .toList();
+        return ResponseEntity.ok(Map.of("jobs", jobs));
+    }
+
+    @Operation(summary = "Progress of an ingestion job (chunks embedded / total)")
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable Long id) {
+        return ResponseEntity.ok(jobService.toProgress(jobService.getJob(id)));
+    }
+
+    @Operation(summary = "Cancel a queued or running ingestion job")
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancelJob(@PathVariable Long id) {
+        return ResponseEntity.ok(jobService.toProgress(jobService.cancel(id)));
+    }
+}
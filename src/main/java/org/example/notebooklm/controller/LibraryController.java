@@ -0,0 +1,158 @@
+package org.example.notebooklm.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.service.LibrarySearchService;
+import org.example.notebooklm.service.SearchTuning;
+import org.example.notebooklm.service.VectorSearchTuner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search and questions across several documents or the whole library.
+ * Payload: "question", "documentIds" (a list of ids or "all"), and optionally
+ * "perDocumentLimit", "limit", "profile", "efSearch" and "probes".
+ */
+@RestController
+@RequestMapping("/api/library")
+@CrossOrigin(origins = "*")
+public class LibraryController {
+
+    private static final Logger logger = LoggerFactory.getLogger(LibraryController.class);
+    private static final int DEFAULT_PER_DOCUMENT_LIMIT = 3;
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final LibrarySearchService librarySearchService;
+    private final VectorSearchTuner searchTuner;
+
+    public LibraryController(LibrarySearchService librarySearchService, VectorSearchTuner searchTuner) {
+        this.librarySearchService = librarySearchService;
+        this.searchTuner = searchTuner;
+    }
+
+    @Operation(summary = "Find the most relevant chunks across documents, with their sources")
+    @PostMapping("/search")
+    public ResponseEntity<?> search(@RequestBody Map<String, Object> payload) {
+        LibraryRequest request;
+        try {
+            request = LibraryRequest.parse(payload, searchTuner);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        try {
+            List<RetrievedChunk> hits = librarySearchService.search(request.documentIds, request.question,
+                    request.perDocumentLimit, request.limit, request.tuning);
+            return ResponseEntity.ok(Map.of("results", LibrarySearchService.toSources(hits)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Library search failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: " + e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Ask a question across documents; the answer lists its sources")
+    @PostMapping("/ask")
+    public ResponseEntity<?> ask(@RequestBody Map<String, Object> payload) {
+        LibraryRequest request;
+        try {
+            request = LibraryRequest.parse(payload, searchTuner);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        try {
+            return ResponseEntity.ok(librarySearchService.ask(request.documentIds, request.question,
+                    request.perDocumentLimit, request.limit, request.tuning));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Library question failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: " + e.getMessage());
+        }
+    }
+
+    private static final class LibraryRequest {
+        private String question;
+        private Set<Long> documentIds;
+        private int perDocumentLimit;
+        private int limit;
+        private SearchTuning tuning;
+
+        static LibraryRequest parse(Map<String, Object> payload, VectorSearchTuner searchTuner) {
+            LibraryRequest request = new LibraryRequest();
+            Object question = payload.get("question");
+            if (!(question instanceof String text) || text.isBlank()) {
+                throw new IllegalArgumentException("Question is missing");
+            }
+            request.question = text;
+
+            Object ids = payload.get("documentIds");
+            if (ids == null || "all".equals(ids)) {
+                request.documentIds = null;
+            } else if (ids instanceof List<?> list && !list.isEmpty()) {
+                request.documentIds = new LinkedHashSet<>();
+                for (Object id : list) {
+                    request.documentIds.add(toLong(id, "documentIds"));
+                }
+            } else {
+                throw new IllegalArgumentException("documentIds must be a non-empty list of ids or \"all\"");
+            }
+
+            request.perDocumentLimit = optionalInt(payload, "perDocumentLimit", DEFAULT_PER_DOCUMENT_LIMIT);
+            request.limit = optionalInt(payload, "limit", DEFAULT_LIMIT);
+            Integer efSearch = optionalPositive(payload, "efSearch");
+            Integer probes = optionalPositive(payload, "probes");
+            Object profile = payload.get("profile");
+            request.tuning = searchTuner.resolve(profile == null ? null : profile.toString(), efSearch, probes);
+            return request;
+        }
+
+        private static int optionalInt(Map<String, Object> payload, String name, int defaultValue) {
+            Object value = payload.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            long parsed = toLong(value, name);
+            if (parsed < Integer.MIN_VALUE || parsed > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(name + " is out of range");
+            }
+            return (int) parsed;
+        }
+
+        // null או חסר: ערך ברירת המחדל של הפרופיל
+        private static Integer optionalPositive(Map<String, Object> payload, String name) {
+            Object value = payload.get(name);
+            if (value == null) {
+                return null;
+            }
+            long parsed = toLong(value, name);
+            if (parsed < 1 || parsed > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(name + " must be positive");
+            }
+            return (int) parsed;
+        }
+
+        private static long toLong(Object value, String name) {
+            if (value instanceof Number number) {
+                return number.longValue();
+            }
+            try {
+                return Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(name + " must contain integers");
+            }
+        }
+    }
+}
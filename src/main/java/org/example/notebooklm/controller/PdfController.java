@@ -4,21 +4,34 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import org.example.notebooklm.exception.DocumentNotReadyException;
+import org.example.notebooklm.exception.ResourceNotFoundException;
+import org.example.notebooklm.model.IngestionJob;
 import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.service.IngestionJobService;
 import org.example.notebooklm.service.IngestionService;
+import org.example.notebooklm.service.IngestionWorker;
 import org.example.notebooklm.service.PdfService;
+import org.example.notebooklm.service.SearchTuning;
+import org.example.notebooklm.service.VectorSearchTuner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/pdf")
@@ -28,13 +41,34 @@ public class PdfController {
     private static final Logger logger = LoggerFactory.getLogger(PdfController.class);
     private final PdfService pdfService;
     private final IngestionService ingestionService;
+    private final AsyncTaskExecutor answerStreamExecutor;
+    private final long streamTimeoutMs;
+    private final VectorSearchTuner searchTuner;
+    private final IngestionJobService ingestionJobService;
+    private final IngestionWorker ingestionWorker;
 
-    public PdfController(PdfService pdfService, IngestionService ingestionService) {
+    public PdfController(PdfService pdfService,
+                         IngestionService ingestionService,
+                         IngestionJobService ingestionJobService,
+                         IngestionWorker ingestionWorker,
+                         @Qualifier("answerStreamExecutor") AsyncTaskExecutor answerStreamExecutor,
+                         @Value("${ask.stream.timeout-ms:180000}") long streamTimeoutMs,
+                         VectorSearchTuner searchTuner) {
         this.pdfService = pdfService;
         this.ingestionService = ingestionService;
+        this.answerStreamExecutor = answerStreamExecutor;
+        this.streamTimeoutMs = streamTimeoutMs;
+        this.searchTuner = searchTuner;
+        this.ingestionJobService = ingestionJobService;
+        this.ingestionWorker = ingestionWorker;
     }
 
-    @Operation(summary = "Upload a PDF file and process its embeddings")
+    /**
+     * Stores the file and queues it for ingestion; returns 202 with the job id at once.
+     * Progress is available at {@code GET /api/jobs/{jobId}}, and the document can be queried
+     * once its status is READY.
+     */
+    @Operation(summary = "Upload a PDF file and queue it for processing")
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> uploadPdf(
             @Parameter(description = "The PDF file to upload", required = true,
@@ -46,27 +80,49 @@ public class PdfController {
             return ResponseEntity.badRequest().body("File is empty");
         }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            ingestionService.validatePdfFile(file);
-            String text = ingestionService.extractTextFromPdf(inputStream);
+        ingestionService.validatePdfFile(file);
+        logger.info("Received PDF upload request: {}", file.getOriginalFilename());
 
-            logger.info("Received PDF upload request: {}", file.getOriginalFilename());
+        IngestionJob job = ingestionJobService.enqueue(file);
+        ingestionWorker.wakeUp();
 
-            PdfDocument pdfDoc = new PdfDocument();
-            pdfDoc.setFileName(file.getOriginalFilename());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "jobId", job.getId(),
+                "documentId", job.getDocumentId(),
+                "status", job.getStatus()));
+    }
 
-            PdfDocument savedDoc = pdfService.saveDocument(pdfDoc);
-            logger.info("Saved PDF document with ID {}", savedDoc.getId());
+    /**
+     * Uploads a new revision of an existing document. A byte-identical file is a no-op (200);
+     * otherwise a replacement job is queued (202) that re-embeds only the chunks whose text
+     * changed, while the document keeps answering from its current revision.
+     */
+    @Operation(summary = "Replace a PDF with a new revision, re-embedding only changed chunks")
+    @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> replacePdf(
+            @PathVariable Long id,
+            @Parameter(description = "The new revision of the PDF", required = true,
+                    content = @Content(mediaType = MediaType.MULTIPART_FORM_DATA_VALUE,
+                            schema = @Schema(type = "string", format = "binary")))
+            @RequestParam("file") MultipartFile file) {
 
-            pdfService.processPdf(savedDoc, text);
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body("File is empty");
+        }
 
-            return ResponseEntity.ok(savedDoc);
+        ingestionService.validatePdfFile(file);
+        logger.info("Received new revision of PDF {}: {}", id, file.getOriginalFilename());
 
-        } catch (IOException e) {
-            logger.error("Error processing PDF upload", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to process PDF: " + e.getMessage());
+        IngestionJob job = ingestionJobService.enqueueReplacement(id, file);
+        if (job == null) {
+            return ResponseEntity.ok(Map.of("documentId", id, "unchanged", true));
         }
+        ingestionWorker.wakeUp();
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "jobId", job.getId(),
+                "documentId", id,
+                "status", job.getStatus()));
     }
 
     @GetMapping("/all")
@@ -74,6 +130,10 @@ public class PdfController {
         return ResponseEntity.ok(pdfService.getAllPdfs());
     }
 
+    /**
+     * Besides "question", the payload may carry "profile" (fast, balanced, accurate),
+     * "efSearch" and "probes" to trade retrieval recall for latency.
+     */
     @PostMapping("/{id}/ask")
     public ResponseEntity<?> ask(@PathVariable Long id, @RequestBody Map<String, String> payload) {
         String question = payload.get("question");
@@ -81,9 +141,20 @@ public class PdfController {
             return ResponseEntity.badRequest().body("Question is missing");
         }
 
+        SearchTuning tuning;
         try {
-            String answer = pdfService.askQuestion(id, question);
+            tuning = resolveTuning(payload);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        try {
+            String answer = pdfService.askQuestion(id, question, tuning);
             return ResponseEntity.ok(Map.of("answer", answer));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (DocumentNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error answering question for PDF {}", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -91,6 +162,97 @@ public class PdfController {
         }
     }
 
+    /**
+     * Streaming variant of {@link #ask}: the answer is sent as server-sent events
+     * ("token" for each fragment, then "done", or "error") while Gemini generates it.
+     * If the client disconnects, the upstream Gemini stream is closed.
+     */
+    @Operation(summary = "Ask a question and stream the answer as server-sent events")
+    @PostMapping(value = "/{id}/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> askStream(@PathVariable Long id, @RequestBody Map<String, String> payload) {
+        String question = payload.get("question");
+        if (question == null || question.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        SearchTuning tuning;
+        try {
+            tuning = resolveTuning(payload);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // לפני פתיחת ה-stream, כדי שמסמך בעיבוד יקבל 409 (ומסמך שלא קיים 404) ולא אירוע error
+        pdfService.requireReady(id);
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        emitter.onCompletion(() -> cancelled.set(true));
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(e -> cancelled.set(true));
+
+        try {
+            answerStreamExecutor.execute(() -> streamAnswer(id, question, tuning, emitter, cancelled));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Rejecting streamed question for PDF {}: stream pool is full", id);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void streamAnswer(Long id, String question, SearchTuning tuning,
+                              SseEmitter emitter, AtomicBoolean cancelled) {
+        try {
+            pdfService.streamQuestion(id, question, tuning, text -> {
+                try {
+                    emitter.send(SseEmitter.event().name("token").data(text));
+                } catch (IOException e) {
+                    // הלקוח התנתק - עוצרים את הקריאה מ-Gemini
+                    cancelled.set(true);
+                    throw new UncheckedIOException(e);
+                }
+            }, cancelled::get);
+
+            if (!cancelled.get()) {
+                emitter.send(SseEmitter.event().name("done").data(""));
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            if (cancelled.get()) {
+                logger.info("Client disconnected while streaming answer for PDF {}", id);
+                return;
+            }
+            logger.error("Error streaming answer for PDF {}", id, e);
+            try {
+                emitter.send(SseEmitter.event().name("error").data("Error: " + e.getMessage()));
+                emitter.complete();
+            } catch (Exception sendFailure) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private SearchTuning resolveTuning(Map<String, String> payload) {
+        return searchTuner.resolve(payload.get("profile"),
+                parseInteger(payload.get("efSearch"), "efSearch"),
+                parseInteger(payload.get("probes"), "probes"));
+    }
+
+    private static Integer parseInteger(String value, String name) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < 1) {
+                throw new IllegalArgumentException(name + " must be positive");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deletePdf(@PathVariable Long id) {
         boolean deleted = pdfService.deletePdf(id);
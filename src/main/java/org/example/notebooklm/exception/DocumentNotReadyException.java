@@ -0,0 +1,20 @@
+package org.example.notebooklm.exception;
+
+import org.example.notebooklm.model.DocumentStatus;
+
+/**
+ * Exception thrown when a document is queried before its ingestion completed.
+ */
+public class DocumentNotReadyException extends RuntimeException {
+
+    private final DocumentStatus status;
+
+    public DocumentNotReadyException(Long pdfId, DocumentStatus status) {
+        super(String.format("PDF with ID %d is not ready (status %s)", pdfId, status));
+        this.status = status;
+    }
+
+    public DocumentStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.notebooklm.exception;
+
+/**
+ * Exception thrown when Gemini does not return a usable answer.
+ * The message is suitable for showing to the user.
+ */
+public class GeminiException extends RuntimeException {
+    public GeminiException(String message) {
+        super(message);
+    }
+
+    public GeminiException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -35,6 +35,18 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(DocumentNotReadyException.class)
+    public ResponseEntity<ErrorResponse> handleDocumentNotReady(DocumentNotReadyException ex) {
+        logger.warn("Document not ready: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                "Document Not Ready",
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(IngestionException.class)
     public ResponseEntity<ErrorResponse> handleIngestionException(IngestionException ex) {
         logger.error("Ingestion error: {}", ex.getMessage(), ex);
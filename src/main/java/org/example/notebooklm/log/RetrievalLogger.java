@@ -1,44 +1,50 @@
 package org.example.notebooklm.log;
 
-import org.example.notebooklm.model.PdfChunk;
+import org.example.notebooklm.model.RetrievedChunk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Component
 public class RetrievalLogger {
 
     private static final Logger logger = LoggerFactory.getLogger(RetrievalLogger.class);
 
-    public void logRawResults(List<PdfChunk> chunks) {
+    public void logRawResults(List<RetrievedChunk> chunks) {
         logger.info("Retrieved {} chunks BEFORE filtering", chunks.size());
         chunks.forEach(c ->
-                logger.info("Chunk {} | textPreview=\"{}\"",
+                logger.info("Chunk {} | distance={} | textPreview=\"{}\"",
                         c.getChunkIndex(),
+                        String.format(Locale.US, "%.4f", c.getDistance()),
                         preview(c.getText()))
         );
     }
 
-    public void logFilteredResults(List<PdfChunk> chunks) {
+    public void logFilteredResults(List<RetrievedChunk> chunks) {
         logger.info("Remaining {} chunks AFTER filtering", chunks.size());
         chunks.forEach(c ->
-                logger.info("Kept chunk {} | textPreview=\"{}\"",
+                logger.info("Kept chunk {} | distance={} | textPreview=\"{}\"",
                         c.getChunkIndex(),
+                        String.format(Locale.US, "%.4f", c.getDistance()),
                         preview(c.getText()))
         );
     }
 
-    public void logRemovedChunks(List<PdfChunk> removed) {
+    public void logRemovedChunks(Map<RetrievedChunk, String> removed) {
         if (removed.isEmpty()) {
             logger.info("No chunks were removed during filtering");
             return;
         }
 
-        removed.forEach(c ->
-                logger.info("Removed chunk {} | textPreview=\"{}\"",
+        removed.forEach((c, reason) ->
+                logger.info("Removed chunk {} | distance={} | reason={} | textPreview=\"{}\"",
                         c.getChunkIndex(),
+                        String.format(Locale.US, "%.4f", c.getDistance()),
+                        reason,
                         preview(c.getText()))
         );
     }
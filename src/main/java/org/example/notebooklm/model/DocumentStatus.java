@@ -0,0 +1,21 @@
+package org.example.notebooklm.model;
+
+/**
+ * Ingestion state of a {@link PdfDocument}. Only {@link #READY} documents are answered from;
+ * rows created before the status existed have no value and count as ready.
+ */
+public enum DocumentStatus {
+
+    /** Uploaded, waiting for an ingestion worker. */
+    PENDING,
+    /** A worker is extracting, chunking and embedding the file. */
+    PROCESSING,
+    /** All chunks are stored and searchable. */
+    READY,
+    /** Ingestion gave up after the configured number of attempts. */
+    FAILED;
+
+    public static boolean isReady(DocumentStatus status) {
+        return status == null || status == READY;
+    }
+}
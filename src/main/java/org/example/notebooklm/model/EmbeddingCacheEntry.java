@@ -0,0 +1,45 @@
+package org.example.notebooklm.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persistent tier of the embedding cache.
+ * Rows are keyed by a hash of the normalized text and the embedding model,
+ * so identical content is embedded once across documents and restarts.
+ */
+@Entity
+@Table(name = "embedding_cache")
+public class EmbeddingCacheEntry {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "model", nullable = false)
+    private String model;
+
+    // ללא מימד קבוע - המימד נקבע לפי המודל
+    @Column(name = "embedding", columnDefinition = "vector", nullable = false)
+    @Convert(converter = VectorConverter.class)
+    @JdbcTypeCode(SqlTypes.OTHER)
+    private float[] embedding;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public float[] getEmbedding() { return embedding; }
+    public void setEmbedding(float[] embedding) { this.embedding = embedding; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,122 @@
+package org.example.notebooklm.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A queued PDF ingestion. Workers on any node claim jobs with {@code FOR UPDATE SKIP LOCKED};
+ * a RUNNING job whose heartbeat stops (the node crashed) is claimed again by another worker.
+ * The uploaded file itself is kept in {@link IngestionJobPayload} until the job finishes.
+ */
+@Entity
+@Table(name = "ingestion_jobs", indexes = @Index(name = "idx_ingestion_jobs_status", columnList = "status, id"))
+public class IngestionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    // עבודה שמחליפה את התוכן של מסמך קיים (רק הצ'אנקים שהשתנו מקבלים embedding)
+    @Column(name = "replace_existing")
+    private Boolean replaceExisting;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private IngestionJobStatus status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "chunks_total", nullable = false)
+    private int chunksTotal;
+
+    @Column(name = "chunks_embedded", nullable = false)
+    private int chunksEmbedded;
+
+    @Column(name = "cancel_requested", nullable = false)
+    private boolean cancelRequested;
+
+    // השרת שמחזיק כרגע את העבודה (host:pid)
+    @Column(name = "locked_by", length = 128)
+    private String lockedBy;
+
+    @Column(name = "error", length = 2000)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // עבודה שנכשלה ממתינה עד הזמן הזה לפני ניסיון נוסף
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getDocumentId() { return documentId; }
+    public void setDocumentId(Long documentId) { this.documentId = documentId; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public boolean isReplaceExisting() { return Boolean.TRUE.equals(replaceExisting); }
+    public void setReplaceExisting(boolean replaceExisting) { this.replaceExisting = replaceExisting; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public IngestionJobStatus getStatus() { return status; }
+    public void setStatus(IngestionJobStatus status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public int getChunksTotal() { return chunksTotal; }
+    public void setChunksTotal(int chunksTotal) { this.chunksTotal = chunksTotal; }
+
+    public int getChunksEmbedded() { return chunksEmbedded; }
+    public void setChunksEmbedded(int chunksEmbedded) { this.chunksEmbedded = chunksEmbedded; }
+
+    public boolean isCancelRequested() { return cancelRequested; }
+    public void setCancelRequested(boolean cancelRequested) { this.cancelRequested = cancelRequested; }
+
+    public String getLockedBy() { return lockedBy; }
+    public void setLockedBy(String lockedBy) { this.lockedBy = lockedBy; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getAvailableAt() { return availableAt; }
+    public void setAvailableAt(LocalDateTime availableAt) { this.availableAt = availableAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getHeartbeatAt() { return heartbeatAt; }
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) { this.heartbeatAt = heartbeatAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
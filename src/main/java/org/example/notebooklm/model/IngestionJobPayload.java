@@ -0,0 +1,25 @@
+package org.example.notebooklm.model;
+
+import jakarta.persistence.*;
+
+/**
+ * The uploaded PDF of an {@link IngestionJob}, stored in the database so a worker on any
+ * node can process it. Kept apart from the job row so listing jobs never reads file contents.
+ */
+@Entity
+@Table(name = "ingestion_job_payloads")
+public class IngestionJobPayload {
+
+    @Id
+    @Column(name = "job_id")
+    private Long jobId;
+
+    @Column(name = "content", columnDefinition = "bytea", nullable = false)
+    private byte[] content;
+
+    public Long getJobId() { return jobId; }
+    public void setJobId(Long jobId) { this.jobId = jobId; }
+
+    public byte[] getContent() { return content; }
+    public void setContent(byte[] content) { this.content = content; }
+}
@@ -0,0 +1,17 @@
+package org.example.notebooklm.model;
+
+/**
+ * Lifecycle of an {@link IngestionJob}: QUEUED -> RUNNING -> SUCCEEDED / FAILED / CANCELLED.
+ * A failed attempt with retries left goes back to QUEUED.
+ */
+public enum IngestionJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    CANCELLED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
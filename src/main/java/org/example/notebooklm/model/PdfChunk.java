@@ -19,6 +19,10 @@ public class PdfChunk {
     @Column(name = "chunk_index")
     private int chunkIndex;
 
+    // SHA-256 של הטקסט, להשוואה בין גרסאות של אותו מסמך
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "pdf_document_id")
     @JsonBackReference
@@ -42,6 +46,9 @@ public class PdfChunk {
     public int getChunkIndex() { return chunkIndex; }
     public void setChunkIndex(int chunkIndex) { this.chunkIndex = chunkIndex; }
 
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
     public PdfDocument getPdfDocument() { return pdfDocument; }
     public void setPdfDocument(PdfDocument pdfDocument) { this.pdfDocument = pdfDocument; }
 
@@ -15,6 +15,15 @@ public class PdfDocument {
 
     private String fileName;
 
+    // מסמך שלא הסתיים עיבודו לא משמש לתשובות
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16)
+    private DocumentStatus status;
+
+    // SHA-256 של קובץ ה-PDF שהועלה
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @OneToMany(mappedBy = "pdfDocument", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<PdfChunk> chunks = new ArrayList<>();
@@ -31,6 +40,12 @@ public class PdfDocument {
     public String getFileName() { return fileName; }
     public void setFileName(String fileName) { this.fileName = fileName; }
 
+    public DocumentStatus getStatus() { return status; }
+    public void setStatus(DocumentStatus status) { this.status = status; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
     public List<PdfChunk> getChunks() { return chunks; }
     public void setChunks(List<PdfChunk> chunks) { this.chunks = chunks; }
 }
\ No newline at end of file
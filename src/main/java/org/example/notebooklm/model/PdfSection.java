@@ -0,0 +1,67 @@
+package org.example.notebooklm.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * A run of consecutive chunks of a document (chunk_index first..last), represented by the
+ * normalized mean of their embeddings. Used as the first stage of hierarchical retrieval.
+ */
+@Entity
+@Table(name = "pdf_sections", indexes = @Index(name = "idx_pdf_sections_document", columnList = "pdf_document_id"))
+public class PdfSection {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "pdf_document_id", nullable = false)
+    private PdfDocument pdfDocument;
+
+    @Column(name = "section_index", nullable = false)
+    private int sectionIndex;
+
+    @Column(name = "first_chunk_index", nullable = false)
+    private int firstChunkIndex;
+
+    @Column(name = "last_chunk_index", nullable = false)
+    private int lastChunkIndex;
+
+    @Column(name = "chunk_count", nullable = false)
+    private int chunkCount;
+
+    // כותרת שזוהתה, או תחילת הצ'אנק הראשון
+    @Column(name = "title", length = 200)
+    private String title;
+
+    @Column(name = "centroid", columnDefinition = "vector(768)")
+    @Convert(converter = VectorConverter.class)
+    @JdbcTypeCode(SqlTypes.OTHER)
+    private float[] centroid;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public PdfDocument getPdfDocument() { return pdfDocument; }
+    public void setPdfDocument(PdfDocument pdfDocument) { this.pdfDocument = pdfDocument; }
+
+    public int getSectionIndex() { return sectionIndex; }
+    public void setSectionIndex(int sectionIndex) { this.sectionIndex = sectionIndex; }
+
+    public int getFirstChunkIndex() { return firstChunkIndex; }
+    public void setFirstChunkIndex(int firstChunkIndex) { this.firstChunkIndex = firstChunkIndex; }
+
+    public int getLastChunkIndex() { return lastChunkIndex; }
+    public void setLastChunkIndex(int lastChunkIndex) { this.lastChunkIndex = lastChunkIndex; }
+
+    public int getChunkCount() { return chunkCount; }
+    public void setChunkCount(int chunkCount) { this.chunkCount = chunkCount; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public float[] getCentroid() { return centroid; }
+    public void setCentroid(float[] centroid) { this.centroid = centroid; }
+}
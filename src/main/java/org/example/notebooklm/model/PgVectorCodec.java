@@ -0,0 +1,173 @@
+package org.example.notebooklm.model;
+
+/**
+ * Single text codec for pgvector literals ({@code [0.1,0.2,...]}).
+ * Formatting writes each element with the shortest representation that round-trips
+ * ({@link Float#toString}) straight into a presized builder, independent of the default
+ * locale. Parsing scans the string once without splitting; plain decimal numbers are
+ * converted on a fast path and anything unusual falls back to {@link Float#parseFloat}.
+ */
+public final class PgVectorCodec {
+
+    // ספרות מעבר לזה לא נכנסות בדיוק ל-double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private PgVectorCodec() {
+    }
+
+    public static String format(float[] vector) {
+        // ~12 תווים לערך טיפוסי כמו -0.012345679
+        StringBuilder sb = new StringBuilder(vector.length * 13 + 2);
+        sb.append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    public static float[] parse(String value) {
+        if (value == null) {
+            return new float[0];
+        }
+        int start = 0;
+        int end = value.length();
+        while (start < end && (Character.isWhitespace(value.charAt(start)) || value.charAt(start) == '[')) {
+            start++;
+        }
+        while (end > start && (Character.isWhitespace(value.charAt(end - 1)) || value.charAt(end - 1) == ']')) {
+            end--;
+        }
+        if (start == end) {
+            return new float[0];
+        }
+
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        float[] result = new float[count];
+        int index = 0;
+        int elementStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || value.charAt(i) == ',') {
+                result[index++] = parseElement(value, elementStart, i);
+                elementStart = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses value[from, to) as a float with the same result as {@link Float#parseFloat}.
+     */
+    static float parseElement(String value, int from, int to) {
+        int i = from;
+        while (i < to && value.charAt(i) == ' ') {
+            i++;
+        }
+        while (to > i && value.charAt(to - 1) == ' ') {
+            to--;
+        }
+
+        boolean negative = false;
+        if (i < to && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < to; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    // אפסים מובילים לא נספרים כספרות משמעותיות
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                if (++digits > 18) {
+                    return fallback(value, from, to);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    exponent--;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return fallback(value, from, to);
+        }
+
+        if (i < to) {
+            char c = value.charAt(i);
+            if (c != 'e' && c != 'E') {
+                return fallback(value, from, to);
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                negativeExponent = value.charAt(i) == '-';
+                i++;
+            }
+            if (i == to || to - i > 4) {
+                return fallback(value, from, to);
+            }
+            int explicit = 0;
+            for (; i < to; i++) {
+                char d = value.charAt(i);
+                if (d < '0' || d > '9') {
+                    return fallback(value, from, to);
+                }
+                explicit = explicit * 10 + (d - '0');
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+        if (mantissa >= MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            return fallback(value, from, to);
+        }
+
+        // שני הערכים מדויקים ב-double, לכן התוצאה מעוגלת נכון (Clinger fast path)
+        double d = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        if (d < Float.MIN_NORMAL || d > Float.MAX_VALUE || isFloatMidpoint(d)) {
+            return fallback(value, from, to);
+        }
+        float f = (float) d;
+        return negative ? -f : f;
+    }
+
+    /**
+     * True when {@code d} lies exactly halfway between two floats, the only case where
+     * rounding the correctly rounded double to float can differ from rounding the decimal.
+     */
+    private static boolean isFloatMidpoint(double d) {
+        return (Double.doubleToRawLongBits(d) & 0x1FFFFFFFL) == 0x10000000L;
+    }
+
+    private static float fallback(String value, int from, int to) {
+        return Float.parseFloat(value.substring(from, to));
+    }
+}
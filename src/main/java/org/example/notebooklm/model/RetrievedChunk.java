@@ -0,0 +1,48 @@
+package org.example.notebooklm.model;
+
+/**
+ * Lightweight retrieval result: a chunk's identity, text and cosine distance to the
+ * query, without the embedding column. Library-wide searches also fill in the
+ * document's file name for source attribution.
+ */
+public class RetrievedChunk {
+
+    private final Long id;
+    private final Long documentId;
+    private final int chunkIndex;
+    private final String text;
+    private final double distance;
+    private final String documentName;
+
+    public RetrievedChunk(Long id, Long documentId, int chunkIndex, String text, double distance) {
+        this(id, documentId, chunkIndex, text, distance, null);
+    }
+
+    public RetrievedChunk(Long id, Long documentId, int chunkIndex, String text, double distance,
+                          String documentName) {
+        this.id = id;
+        this.documentId = documentId;
+        this.chunkIndex = chunkIndex;
+        this.text = text;
+        this.distance = distance;
+        this.documentName = documentName;
+    }
+
+    public Long getId() { return id; }
+
+    public Long getDocumentId() { return documentId; }
+
+    public int getChunkIndex() { return chunkIndex; }
+
+    public String getText() { return text; }
+
+    public double getDistance() { return distance; }
+
+    public String getDocumentName() { return documentName; }
+
+    @Override
+    public String toString() {
+        return "RetrievedChunk{id=" + id + ", documentId=" + documentId + ", chunkIndex=" + chunkIndex
+                + ", distance=" + distance + "}";
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.notebooklm.model;
+
+import java.util.Locale;
+
+/**
+ * Compact representations of {@code pdf_chunks.embedding} used for the coarse search.
+ * The full-precision column stays in the table for exact re-ranking; the quantized
+ * form exists only inside an HNSW expression index, so no data is duplicated.
+ */
+public enum VectorQuantization {
+
+    /** Full precision vector(768), 4 bytes per dimension. */
+    NONE,
+    /** halfvec(768), 2 bytes per dimension. */
+    HALFVEC,
+    /** binary_quantize(...)::bit(768), 1 bit per dimension, compared by Hamming distance. */
+    BINARY;
+
+    public static final int DIMENSIONS = 768;
+
+    public static VectorQuantization fromProperty(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown vector quantization: " + value
+                    + " (expected none, halfvec or binary)");
+        }
+    }
+
+    /**
+     * ORDER BY expression of the coarse search; the single parameter is the query vector
+     * literal. It matches the expression of the corresponding index exactly, which is what
+     * lets Postgres use that index.
+     */
+    public String coarseOrderBy() {
+        return switch (this) {
+            case NONE -> "c.embedding <=> CAST(? AS vector)";
+            case HALFVEC -> "CAST(c.embedding AS halfvec(" + DIMENSIONS + ")) <=> CAST(? AS halfvec(" + DIMENSIONS + "))";
+            case BINARY -> "CAST(binary_quantize(c.embedding) AS bit(" + DIMENSIONS + ")) <~> binary_quantize(CAST(? AS vector))";
+        };
+    }
+}
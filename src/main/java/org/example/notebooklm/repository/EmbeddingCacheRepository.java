@@ -0,0 +1,28 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.EmbeddingCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface EmbeddingCacheRepository extends JpaRepository<EmbeddingCacheEntry, String> {
+
+    /**
+     * Inserts a cache row unless another upload already stored the same content.
+     * ON CONFLICT keeps concurrent ingestions from failing (and rolling back)
+     * on a duplicate key.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO embedding_cache (content_hash, model, embedding, created_at) " +
+            "VALUES (:contentHash, :model, CAST(:vectorString AS vector), now()) " +
+            "ON CONFLICT (content_hash) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("contentHash") String contentHash,
+                       @Param("model") String model,
+                       @Param("vectorString") String vectorString);
+}
@@ -0,0 +1,670 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.util.VectorMath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical navigable small world graph (Malkov & Yashunin) over unit-length vectors,
+ * with cosine distance {@code 1 - dot}.
+ * Vectors live in one row-major float[]; neighbour lists are int arrays whose first
+ * element is the count. Deleted entries become tombstones: they still route searches
+ * but are never returned, and {@link #compact()} rebuilds the graph without them.
+ * Searches share a read lock, inserts and deletes take the write lock.
+ */
+public class HnswIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357; // "HNSW"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size;
+    private float[] vectors;
+    private long[] ids;
+    private int[] chunkIndexes;
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private final Map<Long, Integer> nodeById = new HashMap<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimensions, int m, int efConstruction, long seed) {
+        this(dimensions, m, efConstruction, seed, 16);
+    }
+
+    private HnswIndex(int dimensions, int m, int efConstruction, long seed, int capacity) {
+        if (dimensions <= 0 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimensions=" + dimensions
+                    + ", m=" + m + ", efConstruction=" + efConstruction);
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+        this.vectors = new float[capacity * dimensions];
+        this.ids = new long[capacity];
+        this.chunkIndexes = new int[capacity];
+        this.links = new int[capacity][][];
+    }
+
+    /**
+     * A search result: the chunk id, its position in the document and its distance.
+     */
+    public static final class Hit {
+        private final long id;
+        private final int chunkIndex;
+        private final float distance;
+
+        Hit(long id, int chunkIndex, float distance) {
+            this.id = id;
+            this.chunkIndex = chunkIndex;
+            this.distance = distance;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getChunkIndex() {
+            return chunkIndex;
+        }
+
+        public float getDistance() {
+            return distance;
+        }
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate heap footprint: vectors, ids and neighbour lists.
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) size * dimensions * Float.BYTES + (long) size * (Long.BYTES + Integer.BYTES);
+            for (int node = 0; node < size; node++) {
+                for (int[] list : links[node]) {
+                    bytes += (long) list.length * Integer.BYTES + 16;
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The stored (unit-length) vector of a live entry, or null.
+     */
+    public float[] vector(long id) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeById.get(id);
+            return node == null ? null : Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts a vector; an existing entry with the same id is tombstoned first.
+     */
+    public void add(long id, int chunkIndex, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        float[] normalized = VectorMath.normalize(vector);
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodeById.get(id);
+            if (previous != null) {
+                markDeleted(previous);
+            }
+            insert(id, chunkIndex, normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstones the entry with this id.
+     *
+     * @return false if the id is not in the index
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            markDeleted(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code k} nearest live entries, closest first. {@code ef} (at least k) is the
+     * size of the dynamic candidate list on the bottom layer: larger means better recall.
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        if (query.length != dimensions || k <= 0) {
+            return List.of();
+        }
+        float[] q = VectorMath.normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            float currentDistance = distance(q, current);
+            for (int level = maxLevel; level > 0; level--) {
+                int[] greedy = greedyClosest(q, current, currentDistance, level);
+                current = greedy[0];
+                currentDistance = Float.intBitsToFloat(greedy[1]);
+            }
+            // הרחבה לפי כמות ה-tombstones כדי שעדיין יחזרו k חיים
+            int width = Math.max(ef, k) + Math.min(deletedCount, Math.max(ef, k));
+            NodeHeap found = searchLayer(q, new int[]{current}, new float[]{currentDistance}, width, 0);
+
+            int[] nodes = new int[found.size()];
+            float[] distances = new float[found.size()];
+            for (int i = nodes.length - 1; i >= 0; i--) {
+                distances[i] = found.peekKey();
+                nodes[i] = found.pop();
+            }
+            List<Hit> hits = new ArrayList<>(Math.min(k, nodes.length));
+            for (int i = 0; i < nodes.length && hits.size() < k; i++) {
+                if (!deleted.get(nodes[i])) {
+                    hits.add(new Hit(ids[nodes[i]], chunkIndexes[nodes[i]], distances[i]));
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A new graph with the live entries only, inserted in their original order.
+     */
+    public HnswIndex compact() {
+        lock.readLock().lock();
+        try {
+            HnswIndex compacted = new HnswIndex(dimensions, m, efConstruction, random.nextLong(),
+                    Math.max(16, size - deletedCount));
+            for (int node = 0; node < size; node++) {
+                if (!deleted.get(node)) {
+                    compacted.insert(ids[node], chunkIndexes[node],
+                            Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions));
+                }
+            }
+            return compacted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- snapshot
+
+    /**
+     * Writes the graph to {@code file} through a memory-mapped buffer; the file is
+     * written next to the target and moved into place, so readers never see a partial
+     * snapshot.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            long bytes = 7L * Integer.BYTES;
+            for (int node = 0; node < size; node++) {
+                bytes += Long.BYTES + 3L * Integer.BYTES;
+                for (int[] list : links[node]) {
+                    bytes += (long) (list[0] + 1) * Integer.BYTES;
+                }
+            }
+            bytes += (long) size * dimensions * Float.BYTES;
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("HNSW snapshot too large to map: " + bytes + " bytes");
+            }
+
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                    buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(dimensions).putInt(m)
+                            .putInt(efConstruction).putInt(size).putInt(entryPoint);
+                    for (int node = 0; node < size; node++) {
+                        buffer.putLong(ids[node]).putInt(chunkIndexes[node])
+                                .putInt(deleted.get(node) ? 1 : 0).putInt(links[node].length);
+                        for (int[] list : links[node]) {
+                            for (int i = 0; i <= list[0]; i++) {
+                                buffer.putInt(list[i]);
+                            }
+                        }
+                    }
+                    buffer.asFloatBuffer().put(vectors, 0, size * dimensions);
+                    buffer.force();
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads a graph written by {@link #writeSnapshot(Path)}; no distances are recomputed.
+     */
+    public static HnswIndex readSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not an HNSW snapshot (or an unsupported version): " + file);
+            }
+            int dimensions = buffer.getInt();
+            int m = buffer.getInt();
+            int efConstruction = buffer.getInt();
+            int size = buffer.getInt();
+            HnswIndex index = new HnswIndex(dimensions, m, efConstruction, size, Math.max(16, size));
+            index.entryPoint = buffer.getInt();
+            for (int node = 0; node < size; node++) {
+                index.ids[node] = buffer.getLong();
+                index.chunkIndexes[node] = buffer.getInt();
+                boolean isDeleted = buffer.getInt() != 0;
+                int levels = buffer.getInt();
+                index.links[node] = new int[levels][];
+                for (int level = 0; level < levels; level++) {
+                    int count = buffer.getInt();
+                    int[] list = new int[(level == 0 ? index.maxM0 : m) + 1];
+                    list[0] = count;
+                    for (int i = 1; i <= count; i++) {
+                        list[i] = buffer.getInt();
+                    }
+                    index.links[node][level] = list;
+                }
+                if (isDeleted) {
+                    index.deleted.set(node);
+                    index.deletedCount++;
+                } else {
+                    index.nodeById.put(index.ids[node], node);
+                }
+            }
+            buffer.asFloatBuffer().get(index.vectors, 0, size * dimensions);
+            index.size = size;
+            index.maxLevel = index.entryPoint < 0 ? -1 : index.links[index.entryPoint].length - 1;
+            return index;
+        }
+    }
+
+    // ---------------------------------------------------------------- graph construction
+
+    private void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Algorithm 1 of the paper; the caller holds the write lock and passes a unit vector.
+     */
+    private void insert(long id, int chunkIndex, float[] vector) {
+        ensureCapacity(size + 1);
+        int node = size;
+        System.arraycopy(vector, 0, vectors, node * dimensions, dimensions);
+        ids[node] = id;
+        chunkIndexes[node] = chunkIndex;
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        size++;
+        nodeById.put(id, node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        float currentDistance = distance(vector, current);
+        for (int l = maxLevel; l > level; l--) {
+            int[] greedy = greedyClosest(vector, current, currentDistance, l);
+            current = greedy[0];
+            currentDistance = Float.intBitsToFloat(greedy[1]);
+        }
+
+        int[] entries = {current};
+        float[] entryDistances = {currentDistance};
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap candidates = searchLayer(vector, entries, entryDistances, efConstruction, l);
+            int count = candidates.size();
+            int[] sorted = new int[count];
+            float[] sortedDistances = new float[count];
+            for (int i = count - 1; i >= 0; i--) {
+                sortedDistances[i] = candidates.peekKey();
+                sorted[i] = candidates.pop();
+            }
+
+            int[] selected = selectNeighbors(sorted, sortedDistances, count, m);
+            int[] own = links[node][l];
+            for (int neighbor : selected) {
+                own[++own[0]] = neighbor;
+                connect(neighbor, node, l);
+            }
+            entries = sorted;
+            entryDistances = sortedDistances;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Adds {@code node} to the neighbour list of {@code neighbor}; an overfull list is
+     * pruned back with the same heuristic used for new nodes.
+     */
+    private void connect(int neighbor, int node, int level) {
+        int[] list = links[neighbor][level];
+        int capacity = list.length - 1;
+        if (list[0] < capacity) {
+            list[++list[0]] = node;
+            return;
+        }
+
+        int count = list[0] + 1;
+        int[] candidates = new int[count];
+        float[] distances = new float[count];
+        int offset = neighbor * dimensions;
+        for (int i = 0; i < count - 1; i++) {
+            candidates[i] = list[i + 1];
+            distances[i] = nodeDistance(offset, candidates[i]);
+        }
+        candidates[count - 1] = node;
+        distances[count - 1] = nodeDistance(offset, node);
+        sortByDistance(candidates, distances, count);
+
+        int[] kept = selectNeighbors(candidates, distances, count, capacity);
+        list[0] = kept.length;
+        System.arraycopy(kept, 0, list, 1, kept.length);
+    }
+
+    /**
+     * Algorithm 4 (heuristic with kept pruned connections): a candidate is taken only if it
+     * is closer to the base than to every neighbour already taken, which keeps edges
+     * spread in different directions; leftover slots are filled with the closest rejected.
+     * {@code candidates} must be sorted by distance to the base.
+     */
+    private int[] selectNeighbors(int[] candidates, float[] distances, int count, int limit) {
+        if (count <= limit) {
+            return Arrays.copyOf(candidates, count);
+        }
+        int[] selected = new int[limit];
+        int selectedCount = 0;
+        int[] pruned = new int[count];
+        int prunedCount = 0;
+        for (int i = 0; i < count && selectedCount < limit; i++) {
+            int candidate = candidates[i];
+            boolean diverse = true;
+            int offset = candidate * dimensions;
+            for (int j = 0; j < selectedCount; j++) {
+                if (nodeDistance(offset, selected[j]) < distances[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = candidate;
+            } else {
+                pruned[prunedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < prunedCount && selectedCount < limit; i++) {
+            selected[selectedCount++] = pruned[i];
+        }
+        return selectedCount == limit ? selected : Arrays.copyOf(selected, selectedCount);
+    }
+
+    // ---------------------------------------------------------------- search
+
+    /**
+     * Greedy walk on one layer; returns {node, floatBits(distance)}.
+     */
+    private int[] greedyClosest(float[] query, int start, float startDistance, int level) {
+        int current = start;
+        float currentDistance = startDistance;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = links[current][level];
+            for (int i = 1; i <= list[0]; i++) {
+                float d = distance(query, list[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = list[i];
+                    improved = true;
+                }
+            }
+        }
+        return new int[]{current, Float.floatToRawIntBits(currentDistance)};
+    }
+
+    /**
+     * Algorithm 2: best-first search on one layer, keeping the {@code ef} closest seen.
+     * Returns a max-heap (farthest on top).
+     */
+    private NodeHeap searchLayer(float[] query, int[] entries, float[] entryDistances, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        NodeHeap candidates = new NodeHeap(false, ef * 2);
+        NodeHeap results = new NodeHeap(true, ef + 1);
+        for (int i = 0; i < entries.length; i++) {
+            int entry = entries[i];
+            if (visited.get(entry)) {
+                continue;
+            }
+            visited.set(entry);
+            candidates.push(entryDistances[i], entry);
+            results.push(entryDistances[i], entry);
+            if (results.size() > ef) {
+                results.pop();
+            }
+        }
+
+        while (candidates.size() > 0) {
+            float closest = candidates.peekKey();
+            if (results.size() >= ef && closest > results.peekKey()) {
+                break;
+            }
+            int[] list = links[candidates.pop()][level];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbor = list[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peekKey()) {
+                    candidates.push(d, neighbor);
+                    results.push(d, neighbor);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private float distance(float[] query, int node) {
+        return 1f - VectorMath.dotRow(query, vectors, node * dimensions);
+    }
+
+    private float nodeDistance(int offset, int node) {
+        int other = node * dimensions;
+        float sum = 0f;
+        for (int i = 0; i < dimensions; i++) {
+            sum += vectors[offset + i] * vectors[other + i];
+        }
+        return 1f - sum;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length * 2);
+        vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        ids = Arrays.copyOf(ids, capacity);
+        chunkIndexes = Arrays.copyOf(chunkIndexes, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private static void sortByDistance(int[] nodes, float[] distances, int count) {
+        // רשימות קצרות (2M+1), insertion sort מספיק
+        for (int i = 1; i < count; i++) {
+            int node = nodes[i];
+            float d = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > d) {
+                nodes[j + 1] = nodes[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            distances[j + 1] = d;
+        }
+    }
+
+    /**
+     * Binary heap of (distance, node) on primitive arrays; min- or max-ordered.
+     */
+    private static final class NodeHeap {
+        private final boolean max;
+        private float[] keys;
+        private int[] nodes;
+        private int size;
+
+        NodeHeap(boolean max, int capacity) {
+            this.max = max;
+            this.keys = new float[Math.max(capacity, 4)];
+            this.nodes = new int[keys.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekKey() {
+            return keys[0];
+        }
+
+        void push(float key, int node) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(key, keys[parent])) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            nodes[i] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                float key = keys[size];
+                int node = nodes[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && before(keys[child + 1], keys[child])) {
+                        child++;
+                    }
+                    if (!before(keys[child], key)) {
+                        break;
+                    }
+                    keys[i] = keys[child];
+                    nodes[i] = nodes[child];
+                    i = child;
+                }
+                keys[i] = key;
+                nodes[i] = node;
+            }
+            return top;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
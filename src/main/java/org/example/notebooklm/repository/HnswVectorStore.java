@@ -0,0 +1,398 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.PgVectorCodec;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Vector search on a pure-Java HNSW graph per document.
+ * Graphs are snapshotted to {@code vector-store.hnsw.snapshot-dir} after every change and
+ * memory-mapped back on first use after a restart; a document with neither a graph nor
+ * a snapshot is built from the database in the background while pgvector answers.
+ * Every change to a document bumps its generation; a build whose document changed while
+ * its rows were being read is discarded instead of installing an outdated graph.
+ * Only chunk ids are kept in the graph; the texts of the hits are read by primary key.
+ */
+@Component
+public class HnswVectorStore implements VectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(HnswVectorStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AsyncTaskExecutor executor;
+    private final boolean active;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double maxDeletedRatio;
+    private final Path snapshotDir;
+
+    private final Map<Long, HnswIndex> graphs = new ConcurrentHashMap<>();
+    private final Set<Long> building = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingSnapshots = ConcurrentHashMap.newKeySet();
+    // גרסה לכל מסמך, ומונה ל-invalidateAll; סכומם משתנה בכל שינוי של המסמך
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong resets = new AtomicLong();
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong snapshotLoads = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+
+    public HnswVectorStore(JdbcTemplate jdbcTemplate,
+                           @Qualifier("vectorStoreExecutor") AsyncTaskExecutor executor,
+                           @Value("${retrieval.engine:memory}") String engine,
+                           @Value("${vector-store.hnsw.m:16}") int m,
+                           @Value("${vector-store.hnsw.ef-construction:100}") int efConstruction,
+                           @Value("${vector-store.hnsw.ef-search:64}") int efSearch,
+                           @Value("${vector-store.hnsw.max-deleted-ratio:0.25}") double maxDeletedRatio,
+                           @Value("${vector-store.hnsw.snapshot-dir:data/hnsw}") String snapshotDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.executor = executor;
+        this.active = "hnsw".equalsIgnoreCase(engine);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.maxDeletedRatio = maxDeletedRatio;
+        this.snapshotDir = Paths.get(snapshotDir);
+    }
+
+    @Override
+    public String getName() {
+        return "hnsw";
+    }
+
+    /**
+     * Searches the document's graph, loading its snapshot if needed; returns null (and
+     * schedules a build) when the document has no graph yet.
+     */
+    @Override
+    public List<RetrievedChunk> search(Long pdfId, float[] queryEmbedding, int limit) {
+        HnswIndex graph = graph(pdfId);
+        if (graph == null) {
+            misses.incrementAndGet();
+            requestBuild(pdfId);
+            return null;
+        }
+        searches.incrementAndGet();
+        return toChunks(pdfId, graph.search(queryEmbedding, limit, Math.max(efSearch, limit)));
+    }
+
+    @Override
+    public Map<Long, float[]> embeddings(Long pdfId, Collection<Long> chunkIds) {
+        HnswIndex graph = graphs.get(pdfId);
+        if (graph == null) {
+            return null;
+        }
+        Map<Long, float[]> embeddings = new HashMap<>();
+        for (Long chunkId : chunkIds) {
+            float[] vector = graph.vector(chunkId);
+            if (vector != null) {
+                embeddings.put(chunkId, vector);
+            }
+        }
+        return embeddings;
+    }
+
+    /**
+     * Builds (or loads) the graph of a document synchronously, e.g. before an evaluation.
+     */
+    public boolean ensureBuilt(Long pdfId) {
+        return graph(pdfId) != null || build(pdfId) != null;
+    }
+
+    /**
+     * Adds the chunks of a newly ingested document to its graph, starting a fresh graph when
+     * there is none. Called after the ingestion transaction commits; does nothing unless hnsw
+     * is the retrieval engine.
+     */
+    public void addChunks(Long pdfId, Map<Long, IndexedEmbedding> chunks) {
+        if (!active || chunks.isEmpty()) {
+            return;
+        }
+        changed(pdfId);
+        HnswIndex graph = graph(pdfId);
+        if (graph == null) {
+            graph = graphs.computeIfAbsent(pdfId, id -> newGraph(chunks.values().iterator().next().embedding.length));
+        }
+        add(graph, chunks);
+        scheduleSnapshot(pdfId);
+    }
+
+    /**
+     * Applies a committed revision of a stored document: removed chunks are tombstoned (the
+     * graph is compacted once tombstones exceed {@code max-deleted-ratio} of its entries) and
+     * added chunks inserted. A delta is only applied to a full graph of the previous revision;
+     * when none is loaded the graph is dropped and rebuilt from the database instead.
+     */
+    public void applyRevision(Long pdfId, Collection<Long> removed, Map<Long, IndexedEmbedding> added) {
+        if (!active) {
+            // snapshot ישן לא יתאים לגרסה החדשה אם המנוע יופעל אחר כך
+            invalidate(pdfId);
+            return;
+        }
+        changed(pdfId);
+        HnswIndex graph = graph(pdfId);
+        if (graph == null) {
+            invalidate(pdfId);
+            requestBuild(pdfId);
+            return;
+        }
+        for (Long chunkId : removed) {
+            graph.remove(chunkId);
+        }
+        add(graph, added);
+        int deletedCount = graph.deletedCount();
+        if (deletedCount > 0 && deletedCount > maxDeletedRatio * (graph.size() + deletedCount)) {
+            graphs.replace(pdfId, graph, graph.compact());
+            logger.debug("Compacted HNSW graph of PDF {} ({} tombstones)", pdfId, deletedCount);
+        }
+        scheduleSnapshot(pdfId);
+    }
+
+    public void invalidate(Long pdfId) {
+        changed(pdfId);
+        graphs.remove(pdfId);
+        try {
+            Files.deleteIfExists(snapshotFile(pdfId));
+        } catch (IOException e) {
+            logger.warn("Could not delete HNSW snapshot of PDF {}", pdfId, e);
+        }
+    }
+
+    public void invalidateAll() {
+        resets.incrementAndGet();
+        graphs.clear();
+        if (!Files.isDirectory(snapshotDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(snapshotDir)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".hnsw"))::iterator) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clear HNSW snapshots in {}", snapshotDir, e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", active);
+        stats.put("snapshotDir", snapshotDir.toAbsolutePath().toString());
+        stats.put("m", m);
+        stats.put("efConstruction", efConstruction);
+        stats.put("efSearch", efSearch);
+        stats.put("searches", searches.get());
+        stats.put("misses", misses.get());
+        stats.put("snapshotLoads", snapshotLoads.get());
+        stats.put("builds", builds.get());
+        Map<Long, Object> documents = new LinkedHashMap<>();
+        long bytes = 0;
+        for (Map.Entry<Long, HnswIndex> entry : graphs.entrySet()) {
+            HnswIndex graph = entry.getValue();
+            long graphBytes = graph.memoryBytes();
+            bytes += graphBytes;
+            documents.put(entry.getKey(), Map.of("entries", graph.size(),
+                    "tombstones", graph.deletedCount(), "bytes", graphBytes));
+        }
+        stats.put("memoryBytes", bytes);
+        stats.put("documents", documents);
+        return stats;
+    }
+
+    /**
+     * Embedding and position of a stored chunk, as handed over by ingestion.
+     */
+    public static final class IndexedEmbedding {
+        private final int chunkIndex;
+        private final float[] embedding;
+
+        public IndexedEmbedding(int chunkIndex, float[] embedding) {
+            this.chunkIndex = chunkIndex;
+            this.embedding = embedding;
+        }
+    }
+
+    private HnswIndex graph(Long pdfId) {
+        HnswIndex graph = graphs.get(pdfId);
+        if (graph != null) {
+            return graph;
+        }
+        Path file = snapshotFile(pdfId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            HnswIndex loaded = HnswIndex.readSnapshot(file);
+            snapshotLoads.incrementAndGet();
+            logger.info("Loaded HNSW snapshot of PDF {} ({} entries)", pdfId, loaded.size());
+            HnswIndex existing = graphs.putIfAbsent(pdfId, loaded);
+            return existing != null ? existing : loaded;
+        } catch (IOException | RuntimeException e) {
+            // snapshot פגום - נבנה מחדש מה-DB
+            logger.warn("Discarding unreadable HNSW snapshot {}: {}", file, e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // ייכתב מחדש אחרי הבנייה
+            }
+            return null;
+        }
+    }
+
+    private void requestBuild(Long pdfId) {
+        if (!active || building.contains(pdfId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    build(pdfId);
+                } catch (Exception e) {
+                    logger.warn("Building the HNSW graph of PDF {} failed", pdfId, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.debug("HNSW builder is busy, PDF {} stays in pgvector", pdfId);
+        }
+    }
+
+    private HnswIndex build(Long pdfId) {
+        if (!building.add(pdfId)) {
+            return null;
+        }
+        try {
+            long generation = generation(pdfId);
+            long start = System.nanoTime();
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, chunk_index, CAST(embedding AS text) AS embedding FROM pdf_chunks " +
+                            "WHERE pdf_document_id = ? AND embedding IS NOT NULL ORDER BY chunk_index",
+                    (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getInt("chunk_index"),
+                            PgVectorCodec.parse(rs.getString("embedding"))},
+                    pdfId);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            HnswIndex graph = newGraph(((float[]) rows.get(0)[2]).length);
+            for (Object[] row : rows) {
+                graph.add((Long) row[0], (Integer) row[1], (float[]) row[2]);
+            }
+            // המסמך השתנה בזמן הקריאה מה-DB - הגרף לא משקף אותו
+            if (generation(pdfId) != generation) {
+                logger.debug("Discarding HNSW graph of PDF {}: the document changed during the build", pdfId);
+                return null;
+            }
+            graphs.put(pdfId, graph);
+            if (generation(pdfId) != generation) {
+                graphs.remove(pdfId, graph);
+                return null;
+            }
+            builds.incrementAndGet();
+            logger.info("Built HNSW graph of PDF {}: {} entries in {} ms",
+                    pdfId, rows.size(), (System.nanoTime() - start) / 1_000_000);
+            writeSnapshot(pdfId, graph);
+            return graph;
+        } finally {
+            building.remove(pdfId);
+        }
+    }
+
+    private void changed(Long pdfId) {
+        generations.merge(pdfId, 1L, Long::sum);
+    }
+
+    private long generation(Long pdfId) {
+        return generations.getOrDefault(pdfId, 0L) + resets.get();
+    }
+
+    private static void add(HnswIndex graph, Map<Long, IndexedEmbedding> chunks) {
+        for (Map.Entry<Long, IndexedEmbedding> entry : chunks.entrySet()) {
+            graph.add(entry.getKey(), entry.getValue().chunkIndex, entry.getValue().embedding);
+        }
+    }
+
+    private HnswIndex newGraph(int dimensions) {
+        return new HnswIndex(dimensions, m, efConstruction, System.nanoTime());
+    }
+
+    private void scheduleSnapshot(Long pdfId) {
+        // כמה שינויים רצופים לאותו מסמך מתמזגים ל-snapshot אחד
+        if (!pendingSnapshots.add(pdfId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                pendingSnapshots.remove(pdfId);
+                HnswIndex graph = graphs.get(pdfId);
+                if (graph != null) {
+                    writeSnapshot(pdfId, graph);
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingSnapshots.remove(pdfId);
+            logger.warn("Could not schedule HNSW snapshot of PDF {}: {}", pdfId, e.getMessage());
+        }
+    }
+
+    private void writeSnapshot(Long pdfId, HnswIndex graph) {
+        try {
+            graph.writeSnapshot(snapshotFile(pdfId));
+        } catch (IOException e) {
+            logger.warn("Writing the HNSW snapshot of PDF {} failed", pdfId, e);
+        }
+    }
+
+    private Path snapshotFile(Long pdfId) {
+        return snapshotDir.resolve("pdf-" + pdfId + ".hnsw");
+    }
+
+    private List<RetrievedChunk> toChunks(Long pdfId, List<HnswIndex.Hit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        StringJoiner ids = new StringJoiner(",", "{", "}");
+        for (HnswIndex.Hit hit : hits) {
+            ids.add(Long.toString(hit.getId()));
+        }
+        // chunk_index נקרא מה-DB: החלפת גרסה יכולה להזיז צ'אנקים בלי לגעת בגרף
+        Map<Long, String> texts = new HashMap<>();
+        Map<Long, Integer> indexes = new HashMap<>();
+        jdbcTemplate.query("SELECT id, chunk_index, text FROM pdf_chunks WHERE id = ANY(CAST(? AS bigint[]))",
+                rs -> {
+                    texts.put(rs.getLong("id"), rs.getString("text"));
+                    indexes.put(rs.getLong("id"), rs.getInt("chunk_index"));
+                }, ids.toString());
+
+        List<RetrievedChunk> chunks = new ArrayList<>(hits.size());
+        for (HnswIndex.Hit hit : hits) {
+            String text = texts.get(hit.getId());
+            // צ'אנק שנמחק מה-DB אחרי ה-snapshot לא מוחזר
+            if (text != null) {
+                chunks.add(new RetrievedChunk(hit.getId(), pdfId, indexes.get(hit.getId()), text, hit.getDistance()));
+            }
+        }
+        return chunks;
+    }
+}
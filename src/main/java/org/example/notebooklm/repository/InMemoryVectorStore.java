@@ -0,0 +1,378 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.PgVectorCodec;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.util.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process vector search for hot documents.
+ * Each loaded document is one contiguous float[] of unit-length rows, scored with an
+ * unrolled dot-product kernel, so a query never leaves the JVM. Documents are loaded
+ * from the database in the background on first use (or at startup) and evicted in LRU
+ * order once the memory budget is exceeded. Documents with more than
+ * {@code max-chunks-per-document} chunks are left to pgvector (and remembered until
+ * invalidated, so they are not counted again on every query). Every invalidation bumps
+ * the document's generation; a load that overlapped one is discarded rather than
+ * installing chunks that no longer exist. Loading happens only while this is the
+ * retrieval engine ({@code retrieval.engine=memory}).
+ */
+@Component
+public class InMemoryVectorStore implements VectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryVectorStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AsyncTaskExecutor loaderExecutor;
+    private final boolean active;
+    private final long budgetBytes;
+    private final int maxChunksPerDocument;
+    private final boolean warmOnStartup;
+
+    // סדר גישה = LRU; כל הגישה תחת synchronized
+    private final LinkedHashMap<Long, DocumentMatrix> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Long> loading = ConcurrentHashMap.newKeySet();
+    // מסמכים גדולים מדי שנדחו; וגרסה לכל מסמך שעולה בכל invalidate - שניהם תחת synchronized
+    private final Set<Long> oversized = new HashSet<>();
+    private final Map<Long, Long> generations = new HashMap<>();
+    private long resets;
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public InMemoryVectorStore(JdbcTemplate jdbcTemplate,
+                               @Qualifier("vectorStoreExecutor") AsyncTaskExecutor loaderExecutor,
+                               @Value("${retrieval.engine:memory}") String engine,
+                               @Value("${vector-store.memory.enabled:true}") boolean enabled,
+                               @Value("${vector-store.memory.budget-mb:256}") long budgetMb,
+                               @Value("${vector-store.memory.max-chunks-per-document:5000}") int maxChunksPerDocument,
+                               @Value("${vector-store.memory.warm-on-startup:true}") boolean warmOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.loaderExecutor = loaderExecutor;
+        this.active = enabled && "memory".equalsIgnoreCase(engine);
+        this.budgetBytes = budgetMb * 1024 * 1024;
+        this.maxChunksPerDocument = maxChunksPerDocument;
+        this.warmOnStartup = warmOnStartup;
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    /**
+     * Searches the document if it is loaded; returns null otherwise and schedules a
+     * background load, so the caller falls back to pgvector for this query only.
+     */
+    @Override
+    public List<RetrievedChunk> search(Long pdfId, float[] queryEmbedding, int limit) {
+        DocumentMatrix matrix;
+        boolean tooLarge;
+        synchronized (documents) {
+            matrix = documents.get(pdfId);
+            tooLarge = matrix == null && oversized.contains(pdfId);
+        }
+        if (matrix == null) {
+            misses.incrementAndGet();
+            if (!tooLarge) {
+                requestLoad(pdfId);
+            }
+            return null;
+        }
+        hits.incrementAndGet();
+        return matrix.search(VectorMath.normalize(queryEmbedding), limit);
+    }
+
+    @Override
+    public Map<Long, float[]> embeddings(Long pdfId, Collection<Long> chunkIds) {
+        DocumentMatrix matrix;
+        synchronized (documents) {
+            matrix = documents.get(pdfId);
+        }
+        return matrix == null ? null : matrix.rows(chunkIds);
+    }
+
+    /**
+     * Loads the document synchronously, e.g. before an evaluation.
+     *
+     * @return whether the document is now held in memory
+     */
+    public boolean ensureLoaded(Long pdfId) {
+        synchronized (documents) {
+            if (documents.containsKey(pdfId)) {
+                return true;
+            }
+        }
+        load(pdfId);
+        synchronized (documents) {
+            return documents.containsKey(pdfId);
+        }
+    }
+
+    public void invalidate(Long pdfId) {
+        synchronized (documents) {
+            generations.merge(pdfId, 1L, Long::sum);
+            oversized.remove(pdfId);
+            DocumentMatrix removed = documents.remove(pdfId);
+            if (removed != null) {
+                usedBytes -= removed.bytes;
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (documents) {
+            resets++;
+            oversized.clear();
+            documents.clear();
+            usedBytes = 0;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (documents) {
+            stats.put("active", active);
+            stats.put("documents", documents.size());
+            stats.put("usedBytes", usedBytes);
+            stats.put("oversizedDocuments", oversized.size());
+        }
+        stats.put("budgetBytes", budgetBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("loads", loads.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    /**
+     * Loads the most recently added documents until the memory budget is reached.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!active || !warmOnStartup) {
+            return;
+        }
+        loaderExecutor.execute(() -> {
+            try {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT pdf_document_id FROM pdf_chunks GROUP BY pdf_document_id " +
+                                "HAVING count(*) <= ? ORDER BY pdf_document_id DESC",
+                        Long.class, maxChunksPerDocument);
+                for (Long id : ids) {
+                    if (!load(id)) {
+                        break;
+                    }
+                }
+                logger.info("In-memory vector store warmed up: {}", getStats());
+            } catch (Exception e) {
+                logger.warn("In-memory vector store warm-up failed", e);
+            }
+        });
+    }
+
+    private void requestLoad(Long pdfId) {
+        if (!active || !loading.add(pdfId)) {
+            return;
+        }
+        try {
+            loaderExecutor.execute(() -> {
+                try {
+                    load(pdfId);
+                } catch (Exception e) {
+                    logger.warn("Loading PDF {} into the in-memory vector store failed", pdfId, e);
+                } finally {
+                    loading.remove(pdfId);
+                }
+            });
+        } catch (RuntimeException e) {
+            loading.remove(pdfId);
+            logger.debug("Vector store loader is busy, PDF {} stays in pgvector", pdfId);
+        }
+    }
+
+    /**
+     * @return false when the document did not fit within the budget even after eviction
+     */
+    private boolean load(Long pdfId) {
+        long generation;
+        synchronized (documents) {
+            if (oversized.contains(pdfId)) {
+                return true;
+            }
+            generation = generation(pdfId);
+        }
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pdf_chunks WHERE pdf_document_id = ?", Long.class, pdfId);
+        if (count != null && count > maxChunksPerDocument) {
+            synchronized (documents) {
+                if (generation(pdfId) == generation) {
+                    oversized.add(pdfId);
+                }
+            }
+            return true;
+        }
+        if (count == null || count == 0) {
+            return true;
+        }
+
+        List<Object[]> rows = jdbcTemplate.query(
+                "SELECT id, chunk_index, text, CAST(embedding AS text) AS embedding FROM pdf_chunks " +
+                        "WHERE pdf_document_id = ? AND embedding IS NOT NULL ORDER BY chunk_index",
+                (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getInt("chunk_index"),
+                        rs.getString("text"), PgVectorCodec.parse(rs.getString("embedding"))},
+                pdfId);
+        if (rows.isEmpty()) {
+            return true;
+        }
+
+        DocumentMatrix matrix = DocumentMatrix.of(pdfId, rows);
+        if (matrix.bytes > budgetBytes) {
+            return false;
+        }
+        synchronized (documents) {
+            // invalidate רץ בזמן הקריאה מה-DB - ייתכן שהשורות כבר לא עדכניות
+            if (generation(pdfId) != generation) {
+                logger.debug("Discarding load of PDF {}: it was invalidated while loading", pdfId);
+                return true;
+            }
+            DocumentMatrix previous = documents.put(pdfId, matrix);
+            if (previous != null) {
+                usedBytes -= previous.bytes;
+            }
+            usedBytes += matrix.bytes;
+            var it = documents.entrySet().iterator();
+            while (usedBytes > budgetBytes && it.hasNext()) {
+                Map.Entry<Long, DocumentMatrix> eldest = it.next();
+                if (eldest.getKey().equals(pdfId)) {
+                    continue;
+                }
+                usedBytes -= eldest.getValue().bytes;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        loads.incrementAndGet();
+        logger.debug("Loaded PDF {} into memory: {} chunks, {} bytes", pdfId, matrix.size, matrix.bytes);
+        return true;
+    }
+
+    /**
+     * Must be called while holding the {@code documents} lock.
+     */
+    private long generation(Long pdfId) {
+        return generations.getOrDefault(pdfId, 0L) + resets;
+    }
+
+    /**
+     * Embeddings of one document as unit-length rows of a single row-major array.
+     */
+    private static final class DocumentMatrix {
+        private final Long documentId;
+        private final int size;
+        private final int dimensions;
+        private final float[] rows;
+        private final long[] ids;
+        private final int[] chunkIndexes;
+        private final String[] texts;
+        private final long bytes;
+
+        private DocumentMatrix(Long documentId, int size, int dimensions, float[] rows,
+                               long[] ids, int[] chunkIndexes, String[] texts, long bytes) {
+            this.documentId = documentId;
+            this.size = size;
+            this.dimensions = dimensions;
+            this.rows = rows;
+            this.ids = ids;
+            this.chunkIndexes = chunkIndexes;
+            this.texts = texts;
+            this.bytes = bytes;
+        }
+
+        static DocumentMatrix of(Long documentId, List<Object[]> rows) {
+            int size = rows.size();
+            int dimensions = ((float[]) rows.get(0)[3]).length;
+            float[] matrix = new float[size * dimensions];
+            long[] ids = new long[size];
+            int[] chunkIndexes = new int[size];
+            String[] texts = new String[size];
+            long bytes = (long) matrix.length * Float.BYTES + size * (Long.BYTES + Integer.BYTES);
+            for (int i = 0; i < size; i++) {
+                Object[] row = rows.get(i);
+                ids[i] = (Long) row[0];
+                chunkIndexes[i] = (Integer) row[1];
+                texts[i] = (String) row[2];
+                System.arraycopy(VectorMath.normalize((float[]) row[3]), 0, matrix, i * dimensions, dimensions);
+                // הערכה שמרנית: שני בתים לתו + תקורת אובייקט
+                bytes += 2L * (texts[i] == null ? 0 : texts[i].length()) + 40;
+            }
+            return new DocumentMatrix(documentId, size, dimensions, matrix, ids, chunkIndexes, texts, bytes);
+        }
+
+        Map<Long, float[]> rows(Collection<Long> chunkIds) {
+            Set<Long> wanted = new HashSet<>(chunkIds);
+            Map<Long, float[]> result = new HashMap<>();
+            for (int row = 0; row < size && result.size() < wanted.size(); row++) {
+                if (wanted.contains(ids[row])) {
+                    result.put(ids[row], Arrays.copyOfRange(rows, row * dimensions, (row + 1) * dimensions));
+                }
+            }
+            return result;
+        }
+
+        List<RetrievedChunk> search(float[] query, int limit) {
+            int k = Math.min(limit, size);
+            if (k <= 0 || query.length != dimensions) {
+                return List.of();
+            }
+            // top-k במערכים פרימיטיביים, ממוין עולה לפי מרחק (insertion לתוך k תאים)
+            float[] bestDistances = new float[k];
+            int[] bestRows = new int[k];
+            int filled = 0;
+            for (int row = 0; row < size; row++) {
+                float distance = 1f - VectorMath.dotRow(query, rows, row * dimensions);
+                if (filled == k && distance >= bestDistances[k - 1]) {
+                    continue;
+                }
+                int position = filled < k ? filled++ : k - 1;
+                while (position > 0 && bestDistances[position - 1] > distance) {
+                    bestDistances[position] = bestDistances[position - 1];
+                    bestRows[position] = bestRows[position - 1];
+                    position--;
+                }
+                bestDistances[position] = distance;
+                bestRows[position] = row;
+            }
+
+            List<RetrievedChunk> result = new ArrayList<>(filled);
+            for (int i = 0; i < filled; i++) {
+                int row = bestRows[i];
+                result.add(new RetrievedChunk(ids[row], documentId, chunkIndexes[row], texts[row], bestDistances[i]));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.IngestionJobPayload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionJobPayloadRepository extends JpaRepository<IngestionJobPayload, Long> {
+}
@@ -0,0 +1,21 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.IngestionJob;
+import org.example.notebooklm.model.IngestionJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Reads and enqueues ingestion jobs. Claiming, heartbeats and state transitions are done
+ * with plain SQL in {@link org.example.notebooklm.service.IngestionJobService}, because
+ * they rely on {@code FOR UPDATE SKIP LOCKED} and {@code RETURNING}.
+ */
+@Repository
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long> {
+
+    List<IngestionJob> findTop100ByOrderByIdDesc();
+
+    List<IngestionJob> findTop100ByStatusOrderByIdDesc(IngestionJobStatus status);
+}
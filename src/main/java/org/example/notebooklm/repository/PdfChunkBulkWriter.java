@@ -0,0 +1,221 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.PdfChunk;
+import org.example.notebooklm.model.PgVectorCodec;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Inserts chunk rows without going through the persistence context.
+ * Ids are taken from the table's identity sequence in one query, so the caller gets them
+ * back without a round trip per row; the rows are then streamed with
+ * {@code COPY ... FROM STDIN (FORMAT binary)}, or sent as batched INSERTs when
+ * {@code ingestion.chunk-writer.method=batch} or the connection is not a PostgreSQL one.
+ * Writes join the caller's transaction.
+ */
+@Repository
+public class PdfChunkBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PdfChunkBulkWriter.class);
+
+    public enum Method { COPY, BATCH }
+
+    private static final String COLUMNS = "id, text, chunk_index, content_hash, pdf_document_id, embedding";
+    private static final String COPY_SQL = "COPY pdf_chunks (" + COLUMNS + ") FROM STDIN (FORMAT binary)";
+    private static final String INSERT_SQL = "INSERT INTO pdf_chunks (" + COLUMNS + ") " +
+            "VALUES (?, ?, ?, ?, ?, CAST(? AS vector))";
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('pdf_chunks', 'id')) FROM generate_series(1, ?)";
+
+    // כותרת קבועה של פורמט ה-COPY הבינארי: חתימה, flags, אורך הרחבה
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int FIELDS = 6;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Method method;
+    private final int batchSize;
+
+    public PdfChunkBulkWriter(JdbcTemplate jdbcTemplate,
+                              @Value("${ingestion.chunk-writer.method:copy}") String method,
+                              @Value("${ingestion.chunk-writer.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.method = Method.valueOf(method.trim().toUpperCase(Locale.ROOT));
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Rows the ingestion pipeline buffers before calling {@link #write(List)}.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Inserts the chunks and sets their ids. Every chunk must reference a persisted document.
+     * The chunks are not attached to the persistence context.
+     */
+    public void write(List<PdfChunk> chunks) {
+        write(chunks, method);
+    }
+
+    public void write(List<PdfChunk> chunks, Method method) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        List<Long> ids = jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            chunks.get(i).setId(ids.get(i));
+        }
+
+        long start = System.nanoTime();
+        Method used = jdbcTemplate.execute((Connection connection) -> {
+            if (method == Method.COPY && connection.isWrapperFor(PGConnection.class)) {
+                copy(connection.unwrap(PGConnection.class), chunks);
+                return Method.COPY;
+            }
+            insert(connection, chunks);
+            return Method.BATCH;
+        });
+        logger.debug("Wrote {} chunks with {} in {} ms", chunks.size(), used, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void copy(PGConnection connection, List<PdfChunk> chunks) throws SQLException {
+        CopyIn copyIn = connection.getCopyAPI().copyIn(COPY_SQL);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CopyInStream(copyIn), 1 << 16));
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+            for (PdfChunk chunk : chunks) {
+                out.writeShort(FIELDS);
+                writeBigint(out, chunk.getId());
+                writeText(out, chunk.getText());
+                out.writeInt(4);
+                out.writeInt(chunk.getChunkIndex());
+                writeText(out, chunk.getContentHash());
+                writeBigint(out, chunk.getPdfDocument().getId());
+                writeVector(out, chunk.getEmbedding());
+            }
+            out.writeShort(-1);
+            out.flush();
+            copyIn.endCopy();
+        } catch (IOException e) {
+            cancel(copyIn);
+            throw new SQLException("Failed to stream chunks to COPY", e);
+        } catch (SQLException | RuntimeException e) {
+            cancel(copyIn);
+            throw e;
+        }
+    }
+
+    private void insert(Connection connection, List<PdfChunk> chunks) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            int pending = 0;
+            for (PdfChunk chunk : chunks) {
+                statement.setLong(1, chunk.getId());
+                statement.setString(2, chunk.getText());
+                statement.setInt(3, chunk.getChunkIndex());
+                statement.setString(4, chunk.getContentHash());
+                statement.setLong(5, chunk.getPdfDocument().getId());
+                statement.setString(6, chunk.getEmbedding() == null ? null : PgVectorCodec.format(chunk.getEmbedding()));
+                statement.addBatch();
+                if (++pending == batchSize) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static void writeBigint(DataOutputStream out, Long value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * pgvector's binary form: int16 dimensions, int16 unused, then big-endian float4 values.
+     */
+    private static void writeVector(DataOutputStream out, float[] vector) throws IOException {
+        if (vector == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(4 + 4 * vector.length);
+        out.writeShort(vector.length);
+        out.writeShort(0);
+        for (float value : vector) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static void cancel(CopyIn copyIn) {
+        try {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to cancel COPY into pdf_chunks", e);
+        }
+    }
+
+    private static final class CopyInStream extends OutputStream {
+
+        private final CopyIn copyIn;
+
+        private CopyInStream(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                copyIn.writeToCopy(b, off, len);
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.model.VectorQuantization;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Similarity queries that return {@link RetrievedChunk} projections instead of entities.
+ */
+public interface PdfChunkSearchRepository {
+
+    /**
+     * Nearest chunks of a document by cosine distance, closest first.
+     */
+    List<RetrievedChunk> searchSimilar(Long pdfId, float[] queryEmbedding, int limit);
+
+    /**
+     * Two-stage search: the {@code candidatePool} nearest chunks by the quantized
+     * representation (served by its compact index), re-ranked by exact cosine distance
+     * on the full-precision column. {@code pdfId} may be null to search all documents.
+     */
+    List<RetrievedChunk> searchQuantized(Long pdfId, float[] queryEmbedding, VectorQuantization quantization,
+                                         int candidatePool, int limit);
+
+    /**
+     * Full-text matches of a document, best {@code ts_rank_cd} first. Any of the query's
+     * terms may match, so identifiers such as error codes are found inside longer questions.
+     * The cosine distance to {@code queryEmbedding} is computed for the returned rows only.
+     */
+    List<RetrievedChunk> searchLexical(Long pdfId, String query, float[] queryEmbedding, int limit);
+
+    /**
+     * Nearest chunks across several documents (or all of them when {@code documentIds} is
+     * null) in a single query, with at most {@code perDocumentLimit} chunks per document.
+     * The index scan collects {@code candidatePool} nearest chunks, the cap is applied to
+     * them with a window function, and the best {@code limit} remain, closest first.
+     */
+    List<RetrievedChunk> searchLibrary(Collection<Long> documentIds, float[] queryEmbedding,
+                                       int candidatePool, int perDocumentLimit, int limit);
+
+    /**
+     * {@link #searchLibrary} on the quantized index: the {@code coarsePool} nearest chunks by
+     * the quantized representation are re-ranked by exact cosine distance, and the best
+     * {@code candidatePool} of them go through the per-document cap.
+     */
+    List<RetrievedChunk> searchLibraryQuantized(Collection<Long> documentIds, float[] queryEmbedding,
+                                                VectorQuantization quantization, int coarsePool,
+                                                int candidatePool, int perDocumentLimit, int limit);
+
+    /**
+     * Two-level search: the {@code sections} sections of the document whose centroids are
+     * nearest to the query, then the nearest chunks inside those sections only, closest
+     * first. Empty when the document has no sections.
+     */
+    List<RetrievedChunk> searchHierarchical(Long pdfId, float[] queryEmbedding, int sections, int limit);
+
+    /**
+     * Embeddings of the given chunks by id, e.g. to compare retrieved chunks with each other.
+     */
+    Map<Long, float[]> findEmbeddings(Collection<Long> chunkIds);
+}
@@ -0,0 +1,211 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.PgVectorCodec;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.model.VectorQuantization;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC implementation of {@link PdfChunkSearchRepository}, picked up by Spring Data as a
+ * fragment of {@link PdfChunkRepository}. Selects only the columns retrieval needs, so the
+ * 768-float embedding is neither sent over the wire nor parsed for each hit.
+ */
+class PdfChunkSearchRepositoryImpl implements PdfChunkSearchRepository {
+
+    private static final String SEARCH_SQL =
+            "SELECT c.id, c.pdf_document_id, c.chunk_index, c.text, " +
+                    "c.embedding <=> CAST(? AS vector) AS distance " +
+                    "FROM pdf_chunks c " +
+                    "WHERE c.pdf_document_id = ? " +
+                    "ORDER BY distance " +
+                    "LIMIT ?";
+
+    // שלב 1 (פנימי) לפי הייצוג הדחוס, שלב 2 (חיצוני) מרחק מדויק על הווקטור המלא
+    private static final String QUANTIZED_SQL =
+            "SELECT q.id, q.pdf_document_id, q.chunk_index, q.text, " +
+                    "q.embedding <=> CAST(? AS vector) AS distance " +
+                    "FROM (SELECT c.id, c.pdf_document_id, c.chunk_index, c.text, c.embedding " +
+                    "FROM pdf_chunks c " +
+                    "%s" +
+                    "ORDER BY %s " +
+                    "LIMIT ?) q " +
+                    "ORDER BY distance " +
+                    "LIMIT ?";
+
+    // המילים מחוברות ב-OR (ולא AND) כדי שמזהה בודד בתוך שאלה ארוכה עדיין ימצא התאמה
+    private static final String LEXICAL_SQL =
+            "SELECT l.id, l.pdf_document_id, l.chunk_index, l.text, " +
+                    "l.embedding <=> CAST(? AS vector) AS distance " +
+                    "FROM (SELECT c.id, c.pdf_document_id, c.chunk_index, c.text, c.embedding, " +
+                    "ts_rank_cd(c.text_tsv, q.query) AS rank " +
+                    "FROM pdf_chunks c, " +
+                    "CAST(replace(CAST(plainto_tsquery(CAST(? AS regconfig), ?) AS text), ' & ', ' | ') AS tsquery) AS q(query) " +
+                    "WHERE c.pdf_document_id = ? AND c.text_tsv @@ q.query " +
+                    "ORDER BY rank DESC " +
+                    "LIMIT ?) l " +
+                    "ORDER BY l.rank DESC";
+
+    // ההגבלה לכל מסמך והחיבור לשם הקובץ - משותפים לחיפוש המלא ולחיפוש הדחוס
+    private static final String LIBRARY_RANKING =
+            "ranked AS (" +
+                    "SELECT candidates.*, " +
+                    "row_number() OVER (PARTITION BY pdf_document_id ORDER BY distance) AS doc_rank " +
+                    "FROM candidates) " +
+                    "SELECT r.id, r.pdf_document_id, r.chunk_index, r.text, r.distance, d.file_name " +
+                    "FROM ranked r JOIN pdf_documents d ON d.id = r.pdf_document_id " +
+                    "WHERE r.doc_rank <= ? " +
+                    "ORDER BY r.distance " +
+                    "LIMIT ?";
+
+    private static final String LIBRARY_SQL =
+            "WITH candidates AS (" +
+                    "SELECT c.id, c.pdf_document_id, c.chunk_index, c.text, " +
+                    "c.embedding <=> CAST(? AS vector) AS distance " +
+                    "FROM pdf_chunks c " +
+                    "%s" +
+                    "ORDER BY distance " +
+                    "LIMIT ?), " +
+                    LIBRARY_RANKING;
+
+    // כמו QUANTIZED_SQL: סריקה על האינדקס הדחוס, ואז מרחק מדויק רק ל-pool שחזר ממנו
+    private static final String QUANTIZED_LIBRARY_SQL =
+            "WITH coarse AS (" +
+                    "SELECT c.id, c.pdf_document_id, c.chunk_index, c.text, c.embedding " +
+                    "FROM pdf_chunks c " +
+                    "%s" +
+                    "ORDER BY %s " +
+                    "LIMIT ?), " +
+                    "candidates AS (" +
+                    "SELECT q.id, q.pdf_document_id, q.chunk_index, q.text, " +
+                    "q.embedding <=> CAST(? AS vector) AS distance " +
+                    "FROM coarse q " +
+                    "ORDER BY distance " +
+                    "LIMIT ?), " +
+                    LIBRARY_RANKING;
+
+    // שלב 1: הסעיפים הקרובים לפי centroid; שלב 2: מרחק מדויק רק לצ'אנקים שבטווחים שלהם
+    private static final String HIERARCHICAL_SQL =
+            "WITH best AS (" +
+                    "SELECT s.first_chunk_index, s.last_chunk_index " +
+                    "FROM pdf_sections s " +
+                    "WHERE s.pdf_document_id = ? " +
+                    "ORDER BY s.centroid <=> CAST(? AS vector) " +
+                    "LIMIT ?) " +
+                    "SELECT c.id, c.pdf_document_id, c.chunk_index, c.text, " +
+                    "c.embedding <=> CAST(? AS vector) AS distance " +
+                    "FROM best b JOIN pdf_chunks c " +
+                    "ON c.pdf_document_id = ? AND c.chunk_index BETWEEN b.first_chunk_index AND b.last_chunk_index " +
+                    "ORDER BY distance " +
+                    "LIMIT ?";
+
+    private static final String DOCUMENT_FILTER = "WHERE c.pdf_document_id = ANY(CAST(? AS bigint[])) ";
+
+    static final RowMapper<RetrievedChunk> ROW_MAPPER = (rs, rowNum) -> new RetrievedChunk(
+            rs.getLong("id"),
+            rs.getLong("pdf_document_id"),
+            rs.getInt("chunk_index"),
+            rs.getString("text"),
+            rs.getDouble("distance"));
+
+    private static final RowMapper<RetrievedChunk> LIBRARY_ROW_MAPPER = (rs, rowNum) -> new RetrievedChunk(
+            rs.getLong("id"),
+            rs.getLong("pdf_document_id"),
+            rs.getInt("chunk_index"),
+            rs.getString("text"),
+            rs.getDouble("distance"),
+            rs.getString("file_name"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String textSearchConfig;
+
+    PdfChunkSearchRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                 @Value("${retrieval.hybrid.text-search-config:simple}") String textSearchConfig) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.textSearchConfig = textSearchConfig;
+    }
+
+    @Override
+    public List<RetrievedChunk> searchSimilar(Long pdfId, float[] queryEmbedding, int limit) {
+        return jdbcTemplate.query(SEARCH_SQL, ROW_MAPPER, PgVectorCodec.format(queryEmbedding), pdfId, limit);
+    }
+
+    @Override
+    public List<RetrievedChunk> searchQuantized(Long pdfId, float[] queryEmbedding, VectorQuantization quantization,
+                                                int candidatePool, int limit) {
+        String vector = PgVectorCodec.format(queryEmbedding);
+        if (pdfId == null) {
+            String sql = String.format(QUANTIZED_SQL, "", quantization.coarseOrderBy());
+            return jdbcTemplate.query(sql, ROW_MAPPER, vector, vector, candidatePool, limit);
+        }
+        String sql = String.format(QUANTIZED_SQL, "WHERE c.pdf_document_id = ? ", quantization.coarseOrderBy());
+        return jdbcTemplate.query(sql, ROW_MAPPER, vector, pdfId, vector, candidatePool, limit);
+    }
+
+    @Override
+    public List<RetrievedChunk> searchLexical(Long pdfId, String query, float[] queryEmbedding, int limit) {
+        return jdbcTemplate.query(LEXICAL_SQL, ROW_MAPPER,
+                PgVectorCodec.format(queryEmbedding), textSearchConfig, query, pdfId, limit);
+    }
+
+    @Override
+    public List<RetrievedChunk> searchLibrary(Collection<Long> documentIds, float[] queryEmbedding,
+                                              int candidatePool, int perDocumentLimit, int limit) {
+        String vector = PgVectorCodec.format(queryEmbedding);
+
+        if (documentIds == null) {
+            return jdbcTemplate.query(String.format(LIBRARY_SQL, ""), LIBRARY_ROW_MAPPER,
+                    vector, candidatePool, perDocumentLimit, limit);
+        }
+        return jdbcTemplate.query(String.format(LIBRARY_SQL, DOCUMENT_FILTER),
+                LIBRARY_ROW_MAPPER, vector, idArray(documentIds), candidatePool, perDocumentLimit, limit);
+    }
+
+    @Override
+    public List<RetrievedChunk> searchLibraryQuantized(Collection<Long> documentIds, float[] queryEmbedding,
+                                                       VectorQuantization quantization, int coarsePool,
+                                                       int candidatePool, int perDocumentLimit, int limit) {
+        String vector = PgVectorCodec.format(queryEmbedding);
+
+        if (documentIds == null) {
+            String sql = String.format(QUANTIZED_LIBRARY_SQL, "", quantization.coarseOrderBy());
+            return jdbcTemplate.query(sql, LIBRARY_ROW_MAPPER,
+                    vector, coarsePool, vector, candidatePool, perDocumentLimit, limit);
+        }
+        String sql = String.format(QUANTIZED_LIBRARY_SQL, DOCUMENT_FILTER, quantization.coarseOrderBy());
+        return jdbcTemplate.query(sql, LIBRARY_ROW_MAPPER,
+                idArray(documentIds), vector, coarsePool, vector, candidatePool, perDocumentLimit, limit);
+    }
+
+    @Override
+    public List<RetrievedChunk> searchHierarchical(Long pdfId, float[] queryEmbedding, int sections, int limit) {
+        String vector = PgVectorCodec.format(queryEmbedding);
+        return jdbcTemplate.query(HIERARCHICAL_SQL, ROW_MAPPER, pdfId, vector, sections, vector, pdfId, limit);
+    }
+
+    @Override
+    public Map<Long, float[]> findEmbeddings(Collection<Long> chunkIds) {
+        Map<Long, float[]> embeddings = new HashMap<>();
+        if (chunkIds.isEmpty()) {
+            return embeddings;
+        }
+        jdbcTemplate.query("SELECT id, CAST(embedding AS text) AS embedding FROM pdf_chunks " +
+                        "WHERE id = ANY(CAST(? AS bigint[])) AND embedding IS NOT NULL",
+                rs -> {
+                    embeddings.put(rs.getLong("id"), PgVectorCodec.parse(rs.getString("embedding")));
+                }, idArray(chunkIds));
+        return embeddings;
+    }
+
+    // מערך מזהים כ-literal של Postgres: {1,2,3}
+    private static String idArray(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+}
@@ -1,7 +1,18 @@
 package org.example.notebooklm.repository;
 
+import org.example.notebooklm.model.DocumentStatus;
 import org.example.notebooklm.model.PdfDocument;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface PdfDocumentRepository extends JpaRepository<PdfDocument, Long> {
+
+    @Query("SELECT d.status FROM PdfDocument d WHERE d.id = :id")
+    DocumentStatus findStatusById(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE PdfDocument d SET d.status = :status WHERE d.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") DocumentStatus status);
 }
@@ -0,0 +1,21 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.PdfSection;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PdfSectionRepository extends JpaRepository<PdfSection, Long> {
+
+    long countByPdfDocumentId(Long pdfDocumentId);
+
+    /**
+     * Bulk delete without loading the sections (and their centroids) first.
+     */
+    @Modifying
+    @Query("DELETE FROM PdfSection s WHERE s.pdfDocument.id = :pdfId")
+    int deleteByPdfDocumentId(@Param("pdfId") Long pdfId);
+}
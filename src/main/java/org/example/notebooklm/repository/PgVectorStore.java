@@ -0,0 +1,69 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.model.VectorQuantization;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Searches pgvector in Postgres: exact on the full-precision column, or, with
+ * {@code vector.quantization} set, a coarse search on the quantized index over
+ * {@code rerank-factor} times more candidates followed by exact re-ranking.
+ * Must run inside the transaction that carries the per-query index settings.
+ */
+@Component
+public class PgVectorStore implements VectorStore {
+
+    private final PdfChunkRepository chunkRepository;
+    private final VectorQuantization quantization;
+    private final int rerankFactor;
+
+    public PgVectorStore(PdfChunkRepository chunkRepository,
+                         @Value("${vector.quantization:none}") String quantization,
+                         @Value("${vector.quantization.rerank-factor:4}") int rerankFactor) {
+        this.chunkRepository = chunkRepository;
+        this.quantization = VectorQuantization.fromProperty(quantization);
+        this.rerankFactor = Math.max(1, rerankFactor);
+    }
+
+    @Override
+    public String getName() {
+        return "pgvector";
+    }
+
+    public VectorQuantization getQuantization() {
+        return quantization;
+    }
+
+    /**
+     * Rows the coarse index scan must return for a search of {@code limit} hits.
+     */
+    public int candidatePool(int limit) {
+        return quantization == VectorQuantization.NONE ? limit : limit * rerankFactor;
+    }
+
+    @Override
+    public List<RetrievedChunk> search(Long pdfId, float[] queryEmbedding, int limit) {
+        if (quantization == VectorQuantization.NONE) {
+            return chunkRepository.searchSimilar(pdfId, queryEmbedding, limit);
+        }
+        return chunkRepository.searchQuantized(pdfId, queryEmbedding, quantization, candidatePool(limit), limit);
+    }
+
+    /**
+     * Library-wide search (see {@link PdfChunkSearchRepository#searchLibrary}); with quantization
+     * the coarse scan runs on the quantized index over {@code candidatePool(candidatePool)} rows,
+     * since the full-precision index is normally not built then.
+     */
+    public List<RetrievedChunk> searchLibrary(Collection<Long> documentIds, float[] queryEmbedding,
+                                              int candidatePool, int perDocumentLimit, int limit) {
+        if (quantization == VectorQuantization.NONE) {
+            return chunkRepository.searchLibrary(documentIds, queryEmbedding, candidatePool, perDocumentLimit, limit);
+        }
+        return chunkRepository.searchLibraryQuantized(documentIds, queryEmbedding, quantization,
+                candidatePool(candidatePool), candidatePool, perDocumentLimit, limit);
+    }
+}
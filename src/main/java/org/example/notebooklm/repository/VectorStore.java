@@ -0,0 +1,31 @@
+package org.example.notebooklm.repository;
+
+import org.example.notebooklm.model.RetrievedChunk;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A backend that answers nearest-neighbour queries over the chunks of one document.
+ * The engine used for retrieval is chosen with {@code retrieval.engine}; pgvector is
+ * always the fallback.
+ */
+public interface VectorStore {
+
+    String getName();
+
+    /**
+     * Nearest chunks of a document by cosine distance, closest first, or null when this
+     * backend cannot answer for the document yet (the caller then falls back to pgvector).
+     */
+    List<RetrievedChunk> search(Long pdfId, float[] queryEmbedding, int limit);
+
+    /**
+     * Embeddings this backend already holds for the given chunks of a document (unit
+     * length or not), or null when they have to be read from the database.
+     */
+    default Map<Long, float[]> embeddings(Long pdfId, Collection<Long> chunkIds) {
+        return null;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.RetrievedChunk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Chooses K from the distance distribution of the candidates.
+ * A chunk is kept while its distance stays within {@code max(min-spread, spread-factor * stddev)}
+ * of the best hit: when many candidates score alike (a broad question) many are kept,
+ * when one hit stands out (a narrow question) only the few closest are.
+ * The result always has between {@code min-k} and {@code max-k} chunks, if available.
+ */
+@Component
+public class AdaptiveTopKPolicy implements TopKPolicy {
+
+    private final int minK;
+    private final int maxK;
+    private final double spreadFactor;
+    private final double minSpread;
+
+    public AdaptiveTopKPolicy(@Value("${retrieval.topk.adaptive.min-k:2}") int minK,
+                              @Value("${retrieval.topk.adaptive.max-k:12}") int maxK,
+                              @Value("${retrieval.topk.adaptive.spread-factor:1.0}") double spreadFactor,
+                              @Value("${retrieval.topk.adaptive.min-spread:0.02}") double minSpread) {
+        this.minK = Math.max(1, minK);
+        this.maxK = Math.max(this.minK, maxK);
+        this.spreadFactor = spreadFactor;
+        this.minSpread = minSpread;
+    }
+
+    @Override
+    public String getName() {
+        return "adaptive";
+    }
+
+    @Override
+    public List<RetrievedChunk> select(String question, List<RetrievedChunk> candidates) {
+        int n = candidates.size();
+        if (n <= minK) {
+            return candidates;
+        }
+
+        double mean = 0;
+        for (RetrievedChunk chunk : candidates) {
+            mean += chunk.getDistance();
+        }
+        mean /= n;
+        double variance = 0;
+        for (RetrievedChunk chunk : candidates) {
+            double diff = chunk.getDistance() - mean;
+            variance += diff * diff;
+        }
+        double spread = Math.max(minSpread, spreadFactor * Math.sqrt(variance / n));
+        double limit = candidates.get(0).getDistance() + spread;
+
+        int k = minK;
+        while (k < Math.min(n, maxK) && candidates.get(k).getDistance() <= limit) {
+            k++;
+        }
+        return candidates.subList(0, k);
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.notebooklm.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Exact-match cache of generated answers.
+ * The key is (pdfId, normalized question, ids of the retrieved chunks). Re-ingesting a
+ * document produces new chunk ids, so stale answers simply stop matching; deleting or
+ * resetting documents drops their entries eagerly. Entries expire after a TTL and the
+ * least recently used entry is evicted once the cache is full.
+ */
+@Component
+public class AnswerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnswerCache.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.]+$");
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public AnswerCache(@Value("${answer.cache.max-entries:1000}") int maxEntries,
+                       @Value("${answer.cache.ttl-seconds:3600}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public String get(Long pdfId, String question, List<Long> chunkIds) {
+        String key = key(pdfId, question, chunkIds);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(ttlMillis)) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.answer;
+        }
+    }
+
+    public void put(Long pdfId, String question, List<Long> chunkIds, String answer) {
+        String key = key(pdfId, question, chunkIds);
+        synchronized (entries) {
+            entries.put(key, new Entry(pdfId, answer));
+        }
+    }
+
+    public void invalidateDocument(Long pdfId) {
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().pdfId.equals(pdfId)) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        logger.debug("Invalidated {} cached answers for PDF {}", removed, pdfId);
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        logger.debug("Invalidated all cached answers");
+    }
+
+    public Map<String, Long> getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("entries", (long) size);
+        return stats;
+    }
+
+    /**
+     * Question normalization: Unicode NFC, lower case, collapsed whitespace and no
+     * trailing "?", "!" or "." so trivial variations of the same question share an entry.
+     */
+    static String normalizeQuestion(String question) {
+        String normalized = Normalizer.normalize(question, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    private static String key(Long pdfId, String question, List<Long> chunkIds) {
+        // מזהי הצ'אנקים ממוינים - סדר הדירוג לא משנה את ההקשר שנשלח
+        long[] ids = chunkIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        StringBuilder sb = new StringBuilder();
+        sb.append(pdfId).append('\u0000').append(normalizeQuestion(question)).append('\u0000');
+        for (long id : ids) {
+            sb.append(id).append(',');
+        }
+        return sb.toString();
+    }
+
+    private static final class Entry {
+        private final Long pdfId;
+        private final String answer;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Entry(Long pdfId, String answer) {
+            this.pdfId = pdfId;
+            this.answer = answer;
+        }
+
+        private boolean isExpired(long ttlMillis) {
+            return System.currentTimeMillis() - createdAt > ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.EmbeddingCacheEntry;
+import org.example.notebooklm.model.PgVectorCodec;
+import org.example.notebooklm.repository.EmbeddingCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed cache in front of the Gemini embedding service.
+ * Entries are keyed by SHA-256 of (model, normalized text) and live in two tiers:
+ * a bounded in-memory LRU and the {@code embedding_cache} table, so repeated
+ * content is embedded once across documents and restarts.
+ * Question embeddings use a separate in-memory LRU so they don't crowd out chunk
+ * embeddings, and concurrent requests for the same text share one remote call.
+ */
+@Service
+@Primary // מבטיח שזה השירות שיוזרק כברירת מחדל
+public class CachingEmbeddingService implements EmbeddingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingEmbeddingService.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final GeminiEmbeddingService delegate;
+    private final EmbeddingCacheRepository cacheRepository;
+    private final boolean persistentEnabled;
+    private final Map<String, float[]> memory;
+    private final Map<String, float[]> queryMemory;
+    // בקשות שנשלחו ל-Gemini וטרם חזרו; בקשה זהה מצטרפת לתשובה במקום לשלוח שוב
+    private final Map<String, CompletableFuture<EmbeddingResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong persistentHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong queryHits = new AtomicLong();
+    private final AtomicLong queryMisses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CachingEmbeddingService(GeminiEmbeddingService delegate,
+                                   EmbeddingCacheRepository cacheRepository,
+                                   @Value("${embedding.cache.max-entries:10000}") int maxEntries,
+                                   @Value("${embedding.cache.persistent.enabled:true}") boolean persistentEnabled,
+                                   @Value("${embedding.query-cache.max-entries:2000}") int maxQueryEntries) {
+        this.delegate = delegate;
+        this.cacheRepository = cacheRepository;
+        this.persistentEnabled = persistentEnabled;
+        this.memory = lru(maxEntries);
+        this.queryMemory = lru(maxQueryEntries);
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+
+    @Override
+    public float[] generateEmbedding(String text) {
+        EmbeddingResult result = generateEmbeddings(List.of(text)).get(0);
+        return result.getEmbedding();
+    }
+
+    /**
+     * Question embeddings: served from the query LRU, otherwise fetched once even if
+     * many requests ask the same question at the same time. Not written to the
+     * persistent tier, which is reserved for document content.
+     */
+    @Override
+    public float[] generateQueryEmbedding(String text) {
+        String key = cacheKey(text);
+        float[] cached = get(queryMemory, key);
+        if (cached != null) {
+            queryHits.incrementAndGet();
+            return cached;
+        }
+
+        queryMisses.incrementAndGet();
+        Map<String, String> request = Map.of(key, text);
+        EmbeddingResult result = fetch(request, (k, embedding) -> put(queryMemory, k, embedding)).get(key);
+        return result.getEmbedding();
+    }
+
+    @Override
+    public List<EmbeddingResult> generateEmbeddings(List<String> texts) {
+        EmbeddingResult[] results = new EmbeddingResult[texts.size()];
+
+        // מפתח -> כל המיקומים בבקשה שמחכים לו (טקסטים זהים נשלחים פעם אחת)
+        Map<String, List<Integer>> pending = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = cacheKey(texts.get(i));
+            float[] cached = get(memory, key);
+            if (cached != null) {
+                memoryHits.incrementAndGet();
+                results[i] = EmbeddingResult.success(cached);
+            } else {
+                pending.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!pending.isEmpty() && persistentEnabled) {
+            loadFromDatabase(pending, results);
+        }
+
+        if (!pending.isEmpty()) {
+            Map<String, String> request = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Integer>> entry : pending.entrySet()) {
+                request.put(entry.getKey(), texts.get(entry.getValue().get(0)));
+            }
+
+            Map<String, EmbeddingResult> fresh = fetch(request, (key, embedding) -> {
+                put(memory, key, embedding);
+                store(key, embedding);
+            });
+            for (Map.Entry<String, List<Integer>> entry : pending.entrySet()) {
+                EmbeddingResult result = fresh.get(entry.getKey());
+                misses.addAndGet(entry.getValue().size());
+                for (int position : entry.getValue()) {
+                    results[position] = result;
+                }
+            }
+        }
+
+        return List.of(results);
+    }
+
+    /**
+     * Hit/miss/eviction counters since startup.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("memoryHits", memoryHits.get());
+        stats.put("persistentHits", persistentHits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("memoryEntries", (long) size(memory));
+        stats.put("queryHits", queryHits.get());
+        stats.put("queryMisses", queryMisses.get());
+        stats.put("queryEntries", (long) size(queryMemory));
+        stats.put("coalescedRequests", coalesced.get());
+        return stats;
+    }
+
+    /**
+     * Embeds the given key -> text pairs through the delegate with single-flight semantics:
+     * a key already being fetched by another thread is awaited instead of requested again.
+     * {@code onFresh} is called for every vector this call fetched, before waiting threads
+     * are released, so later lookups find it in the cache.
+     */
+    private Map<String, EmbeddingResult> fetch(Map<String, String> request,
+                                               BiConsumer<String, float[]> onFresh) {
+        Map<String, EmbeddingResult> results = new HashMap<>();
+        Map<String, CompletableFuture<EmbeddingResult>> waiting = new HashMap<>();
+        Map<String, CompletableFuture<EmbeddingResult>> owned = new LinkedHashMap<>();
+
+        for (String key : request.keySet()) {
+            CompletableFuture<EmbeddingResult> mine = new CompletableFuture<>();
+            CompletableFuture<EmbeddingResult> existing = inFlight.putIfAbsent(key, mine);
+            if (existing != null) {
+                coalesced.incrementAndGet();
+                waiting.put(key, existing);
+            } else {
+                owned.put(key, mine);
+            }
+        }
+
+        try {
+            if (!owned.isEmpty()) {
+                List<String> keys = new ArrayList<>(owned.keySet());
+                List<String> ownedTexts = new ArrayList<>(keys.size());
+                for (String key : keys) {
+                    ownedTexts.add(request.get(key));
+                }
+
+                List<EmbeddingResult> fresh = delegate.generateEmbeddings(ownedTexts);
+                for (int i = 0; i < keys.size(); i++) {
+                    EmbeddingResult result = fresh.get(i);
+                    results.put(keys.get(i), result);
+                    if (result.isSuccess()) {
+                        onFresh.accept(keys.get(i), result.getEmbedding());
+                    }
+                }
+            }
+        } finally {
+            // גם אם הקריאה נכשלה - משחררים את כל מי שמחכה למפתחות שלנו
+            for (Map.Entry<String, CompletableFuture<EmbeddingResult>> entry : owned.entrySet()) {
+                EmbeddingResult result = results.computeIfAbsent(entry.getKey(),
+                        k -> EmbeddingResult.failure("Embedding request failed"));
+                entry.getValue().complete(result);
+                inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<String, CompletableFuture<EmbeddingResult>> entry : waiting.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().join());
+        }
+        return results;
+    }
+
+    private void loadFromDatabase(Map<String, List<Integer>> pending, EmbeddingResult[] results) {
+        try {
+            for (EmbeddingCacheEntry entry : cacheRepository.findAllById(pending.keySet())) {
+                List<Integer> positions = pending.remove(entry.getContentHash());
+                if (positions == null) {
+                    continue;
+                }
+                persistentHits.addAndGet(positions.size());
+                put(memory, entry.getContentHash(), entry.getEmbedding());
+                for (int position : positions) {
+                    results[position] = EmbeddingResult.success(entry.getEmbedding());
+                }
+            }
+        } catch (Exception e) {
+            // המטמון הוא אופטימיזציה בלבד - כשל בו לא מפיל את ה-ingestion
+            logger.warn("Embedding cache lookup failed, falling back to Gemini", e);
+        }
+    }
+
+    private void store(String key, float[] embedding) {
+        if (!persistentEnabled) {
+            return;
+        }
+        try {
+            cacheRepository.insertIfAbsent(key, getModelName(), PgVectorCodec.format(embedding));
+        } catch (Exception e) {
+            logger.warn("Failed to persist embedding cache entry {}", key, e);
+        }
+    }
+
+    private Map<String, float[]> lru(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static float[] get(Map<String, float[]> cache, String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    private static void put(Map<String, float[]> cache, String key, float[] embedding) {
+        synchronized (cache) {
+            cache.put(key, embedding);
+        }
+    }
+
+    private static int size(Map<String, float[]> cache) {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private String cacheKey(String text) {
+        String normalized = text == null ? "" : WHITESPACE
+                .matcher(Normalizer.normalize(text, Normalizer.Form.NFC))
+                .replaceAll(" ")
+                .trim();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(getModelName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
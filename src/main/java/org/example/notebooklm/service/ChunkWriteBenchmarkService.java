@@ -0,0 +1,114 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.DocumentStatus;
+import org.example.notebooklm.model.PdfChunk;
+import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.model.VectorQuantization;
+import org.example.notebooklm.repository.PdfChunkBulkWriter;
+import org.example.notebooklm.repository.PdfChunkRepository;
+import org.example.notebooklm.repository.PdfDocumentRepository;
+import org.example.notebooklm.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures chunk insert throughput against the live database: the same synthetic document
+ * (text and embeddings of ingestion size) is written per chunk through JPA, as batched
+ * INSERTs and through binary COPY. Each run uses its own transaction that is rolled back,
+ * so nothing is left behind; only sequence values are consumed.
+ */
+@Service
+public class ChunkWriteBenchmarkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkWriteBenchmarkService.class);
+
+    // בערך צ'אנק של 256 טוקנים
+    private static final int TEXT_CHARS = 1024;
+
+    private final PdfDocumentRepository documentRepository;
+    private final PdfChunkRepository chunkRepository;
+    private final PdfChunkBulkWriter chunkWriter;
+    private final TransactionTemplate transaction;
+
+    public ChunkWriteBenchmarkService(PdfDocumentRepository documentRepository,
+                                      PdfChunkRepository chunkRepository,
+                                      PdfChunkBulkWriter chunkWriter,
+                                      PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.chunkRepository = chunkRepository;
+        this.chunkWriter = chunkWriter;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    public Map<String, Object> run(int chunks) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("chunks", chunks);
+        report.put("configuredMethod", chunkWriter.getMethod().name().toLowerCase(Locale.ROOT));
+        report.put("jpa", measure(chunks, "jpa", batch -> batch.forEach(chunkRepository::save)));
+        report.put("batch", measure(chunks, "batch", batch -> chunkWriter.write(batch, PdfChunkBulkWriter.Method.BATCH)));
+        report.put("copy", measure(chunks, "copy", batch -> chunkWriter.write(batch, PdfChunkBulkWriter.Method.COPY)));
+        logger.info("Chunk write benchmark: {}", report);
+        return report;
+    }
+
+    private Map<String, Object> measure(int count, String name, Writer writer) {
+        return transaction.execute(status -> {
+            status.setRollbackOnly();
+            PdfDocument document = new PdfDocument();
+            document.setFileName("benchmark-" + name + ".pdf");
+            document.setStatus(DocumentStatus.PENDING);
+            document = documentRepository.save(document);
+            // אותו seed לכל שיטה: אותם נתונים בדיוק
+            List<PdfChunk> chunks = synthetic(document, count, new Random(42));
+
+            long start = System.nanoTime();
+            for (int from = 0; from < count; from += chunkWriter.getBatchSize()) {
+                writer.write(chunks.subList(from, Math.min(count, from + chunkWriter.getBatchSize())));
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("ms", elapsedNanos / 1_000_000);
+            result.put("chunksPerSecond", elapsedNanos == 0 ? 0 : Math.round(count * 1e9 / elapsedNanos));
+            return result;
+        });
+    }
+
+    private static List<PdfChunk> synthetic(PdfDocument document, int count, Random random) {
+        List<PdfChunk> chunks = new ArrayList<>(count);
+        StringBuilder text = new StringBuilder(TEXT_CHARS + 16);
+        for (int i = 0; i < count; i++) {
+            text.setLength(0);
+            while (text.length() < TEXT_CHARS) {
+                text.append("word").append(random.nextInt(10_000)).append(' ');
+            }
+            float[] embedding = new float[VectorQuantization.DIMENSIONS];
+            for (int d = 0; d < embedding.length; d++) {
+                embedding[d] = (float) random.nextGaussian();
+            }
+            PdfChunk chunk = new PdfChunk();
+            chunk.setText(text.toString());
+            chunk.setContentHash(ContentHash.of(chunk.getText()));
+            chunk.setChunkIndex(i);
+            chunk.setPdfDocument(document);
+            chunk.setEmbedding(embedding);
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(List<PdfChunk> batch);
+    }
+}
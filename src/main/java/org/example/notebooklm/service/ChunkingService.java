@@ -1,23 +1,264 @@
 package org.example.notebooklm.service;
 
+import org.example.notebooklm.util.TokenEstimator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+/**
+ * Splits document text into chunks of at most {@code ingestion.chunking.max-tokens} estimated
+ * tokens. Each chunk ends at the strongest boundary found in the second half of its window:
+ * a paragraph or page break, then a sentence end, a line end, and a word gap; only a run
+ * without any whitespace is cut mid-word. The next chunk starts up to
+ * {@code ingestion.chunking.overlap-tokens} before the cut, at a sentence or word start.
+ * Pages are consumed lazily and the text is scanned once without per-word allocation.
+ */
 @Service
 public class ChunkingService {
 
-    private static final int CHUNK_SIZE = 800;
+    // סוגי גבולות, מהחלש לחזק
+    private static final int HARD = 0;
+    private static final int WORD = 1;
+    private static final int LINE = 2;
+    private static final int SENTENCE = 3;
+    private static final int PARAGRAPH = 4;
 
-    public List<String> chunk(String text) {
-        List<String> chunks = new ArrayList<>();
+    private final int maxChars;
+    private final int minChars;
+    private final int overlapChars;
 
-        for (int i = 0; i < text.length(); i += CHUNK_SIZE) {
-            int end = Math.min(text.length(), i + CHUNK_SIZE);
-            chunks.add(text.substring(i, end));
+    public ChunkingService(@Value("${ingestion.chunking.max-tokens:256}") int maxTokens,
+                           @Value("${ingestion.chunking.overlap-tokens:32}") int overlapTokens) {
+        if (maxTokens < 8) {
+            throw new IllegalStateException("ingestion.chunking.max-tokens must be at least 8: " + maxTokens);
+        }
+        if (overlapTokens < 0 || overlapTokens > maxTokens / 4) {
+            throw new IllegalStateException("ingestion.chunking.overlap-tokens must be between 0 and max-tokens / 4: "
+                    + overlapTokens);
         }
+        this.maxChars = TokenEstimator.chars(maxTokens);
+        this.minChars = maxChars / 2;
+        this.overlapChars = TokenEstimator.chars(overlapTokens);
+    }
 
+    public List<String> chunk(CharSequence text) {
+        List<String> chunks = new ArrayList<>();
+        chunk(List.of(text).iterator()).forEachRemaining(chunks::add);
         return chunks;
     }
+
+    /**
+     * Chunks the concatenated pages lazily: a page is read only when the pending text no
+     * longer fills a chunk window. Page ends count as paragraph breaks.
+     */
+    public Iterator<String> chunk(Iterator<? extends CharSequence> pages) {
+        return new ChunkIterator(pages);
+    }
+
+    private final class ChunkIterator implements Iterator<String> {
+
+        private final Iterator<? extends CharSequence> pages;
+        private final StringBuilder buffer = new StringBuilder();
+        // סופי עמודים (אינדקסים ב-buffer), בסדר עולה
+        private int[] pageBreaks = new int[16];
+        private int pageBreakCount;
+        private int firstPageBreak;
+        private int start;
+        // סוף הצ'אנק האחרון; זנב שכולו חפיפה לא נפלט שוב
+        private int emittedEnd;
+        private String next;
+
+        private ChunkIterator(Iterator<? extends CharSequence> pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String chunk = next;
+            next = null;
+            return chunk;
+        }
+
+        private String advance() {
+            while (true) {
+                fill();
+                start = skipWhitespace(start, buffer.length());
+                int remaining = buffer.length() - start;
+                if (remaining == 0) {
+                    return null;
+                }
+                if (remaining <= maxChars) {
+                    // המקור נגמר: השארית היא הצ'אנק האחרון
+                    int end = buffer.length();
+                    String chunk = hasContentAfter(emittedEnd, end) ? text(start, end) : null;
+                    start = end;
+                    emittedEnd = end;
+                    return chunk;
+                }
+
+                int cut = findCut();
+                String chunk = text(start, cut);
+                emittedEnd = cut;
+                start = overlapStart(cut);
+                compact();
+                if (!chunk.isEmpty()) {
+                    return chunk;
+                }
+            }
+        }
+
+        /**
+         * Reads pages until the buffer holds more than one window past {@code start}.
+         */
+        private void fill() {
+            while (buffer.length() - start <= maxChars && pages.hasNext()) {
+                buffer.append(pages.next());
+                addPageBreak(buffer.length());
+            }
+        }
+
+        /**
+         * Scans the window backwards and returns the end of the chunk at its strongest boundary.
+         */
+        private int findCut() {
+            int limit = start + maxChars;
+            int floor = start + minChars;
+            int[] best = {limit, -1, -1, -1, -1};
+            int pageBreak = lastPageBreakIn(floor, limit);
+            if (pageBreak >= 0) {
+                best[PARAGRAPH] = pageBreak;
+            }
+
+            boolean blankSinceNewline = false;
+            for (int i = limit - 1; i >= floor && i > best[PARAGRAPH]; i--) {
+                char c = buffer.charAt(i);
+                if (c == '\n') {
+                    if (blankSinceNewline) {
+                        best[PARAGRAPH] = i;
+                    } else if (best[LINE] < 0) {
+                        best[LINE] = i;
+                    }
+                    blankSinceNewline = true;
+                } else if (Character.isWhitespace(c)) {
+                    if (best[WORD] < 0) {
+                        best[WORD] = i;
+                    }
+                } else {
+                    blankSinceNewline = false;
+                    if (best[SENTENCE] < 0 && isSentenceEnd(i)) {
+                        best[SENTENCE] = i + 1;
+                    }
+                }
+            }
+            for (int kind = PARAGRAPH; kind > HARD; kind--) {
+                if (best[kind] >= 0) {
+                    return best[kind];
+                }
+            }
+            return best[HARD];
+        }
+
+        /**
+         * Where the next chunk starts: the first sentence start, else word start, within the
+         * overlap before {@code cut}.
+         */
+        private int overlapStart(int cut) {
+            if (overlapChars == 0) {
+                return cut;
+            }
+            int from = Math.max(start + 1, cut - overlapChars);
+            int wordStart = -1;
+            for (int i = from; i < cut; i++) {
+                char c = buffer.charAt(i);
+                if (i + 1 < cut && isSentenceEnd(i)) {
+                    return i + 1;
+                }
+                if (wordStart < 0 && Character.isWhitespace(c)) {
+                    wordStart = i + 1;
+                }
+            }
+            return wordStart >= 0 ? wordStart : cut;
+        }
+
+        private boolean isSentenceEnd(int i) {
+            char c = buffer.charAt(i);
+            if (c != '.' && c != '!' && c != '?' && c != '…') {
+                return false;
+            }
+            return i + 1 >= buffer.length() || Character.isWhitespace(buffer.charAt(i + 1));
+        }
+
+        private boolean hasContentAfter(int from, int end) {
+            return skipWhitespace(Math.max(from, start), end) < end;
+        }
+
+        private int skipWhitespace(int from, int end) {
+            int i = from;
+            while (i < end && Character.isWhitespace(buffer.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private String text(int from, int to) {
+            int end = to;
+            while (end > from && Character.isWhitespace(buffer.charAt(end - 1))) {
+                end--;
+            }
+            return buffer.substring(from, end);
+        }
+
+        private void addPageBreak(int position) {
+            if (pageBreakCount == pageBreaks.length) {
+                int[] grown = new int[pageBreaks.length * 2];
+                System.arraycopy(pageBreaks, firstPageBreak, grown, 0, pageBreakCount - firstPageBreak);
+                pageBreakCount -= firstPageBreak;
+                firstPageBreak = 0;
+                pageBreaks = grown;
+            }
+            pageBreaks[pageBreakCount++] = position;
+        }
+
+        private int lastPageBreakIn(int floor, int limit) {
+            while (firstPageBreak < pageBreakCount && pageBreaks[firstPageBreak] < floor) {
+                firstPageBreak++;
+            }
+            int found = -1;
+            for (int i = firstPageBreak; i < pageBreakCount && pageBreaks[i] <= limit; i++) {
+                found = pageBreaks[i];
+            }
+            return found;
+        }
+
+        /**
+         * Drops consumed text once it is more than half of the buffer, so each character is
+         * copied a bounded number of times.
+         */
+        private void compact() {
+            if (start < buffer.length() / 2 || start < maxChars) {
+                return;
+            }
+            buffer.delete(0, start);
+            for (int i = firstPageBreak; i < pageBreakCount; i++) {
+                pageBreaks[i] -= start;
+            }
+            emittedEnd -= start;
+            start = 0;
+        }
+    }
 }
@@ -0,0 +1,241 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.exception.IngestionException;
+import org.example.notebooklm.model.PdfChunk;
+import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.repository.HnswVectorStore;
+import org.example.notebooklm.repository.InMemoryVectorStore;
+import org.example.notebooklm.repository.PdfChunkBulkWriter;
+import org.example.notebooklm.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Applies a new revision of a stored document by re-embedding only what changed.
+ * The new text is chunked as usual and each chunk is matched by content hash against the
+ * document's current chunks: matches keep their row and embedding (only chunk_index may move),
+ * the rest are embedded, and unmatched old chunks are deleted. Embedding runs before any
+ * transaction is opened; the delta is then written in one short transaction, so the document
+ * keeps answering from the previous revision until the swap commits. If any chunk cannot be
+ * embedded nothing is written and the job fails, so the previous revision (and its hash)
+ * stays in place and the same file can be submitted again. Sections are recomputed after the
+ * commit, outside the lock.
+ */
+@Service
+public class DocumentRevisionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentRevisionService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PdfChunkBulkWriter chunkWriter;
+    private final ChunkingService chunkingService;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final SectionService sectionService;
+    private final AnswerCache answerCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final InMemoryVectorStore memoryVectorStore;
+    private final HnswVectorStore hnswVectorStore;
+    private final TransactionTemplate transaction;
+
+    public DocumentRevisionService(JdbcTemplate jdbcTemplate,
+                                   PdfChunkBulkWriter chunkWriter,
+                                   ChunkingService chunkingService,
+                                   EmbeddingPipeline embeddingPipeline,
+                                   SectionService sectionService,
+                                   AnswerCache answerCache,
+                                   SemanticAnswerCache semanticAnswerCache,
+                                   InMemoryVectorStore memoryVectorStore,
+                                   HnswVectorStore hnswVectorStore,
+                                   PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkWriter = chunkWriter;
+        this.chunkingService = chunkingService;
+        this.embeddingPipeline = embeddingPipeline;
+        this.sectionService = sectionService;
+        this.answerCache = answerCache;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.memoryVectorStore = memoryVectorStore;
+        this.hnswVectorStore = hnswVectorStore;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param document    the stored document, as read before the new revision was chunked
+     * @param contentHash hash of the new file
+     * @param fileName    name of the new file
+     * @param pages       text of the new revision
+     * @return counts of kept, moved, added and removed chunks
+     */
+    public Map<String, Integer> replace(PdfDocument document, String contentHash, String fileName,
+                                        Iterator<String> pages, IngestionProgress progress) {
+        Long pdfId = document.getId();
+        List<String> texts = new ArrayList<>();
+        chunkingService.chunk(pages).forEachRemaining(texts::add);
+
+        // צ'אנקים קיימים לפי hash, בסדר chunk_index; hash כפול נצרך לפי הסדר
+        Map<String, ArrayDeque<StoredChunk>> current = new HashMap<>();
+        int[] currentCount = {0};
+        jdbcTemplate.query("SELECT id, chunk_index, content_hash, " +
+                        "CASE WHEN content_hash IS NULL THEN text END AS text " +
+                        "FROM pdf_chunks WHERE pdf_document_id = ? ORDER BY chunk_index",
+                rs -> {
+                    String hash = rs.getString("content_hash");
+                    if (hash == null) {
+                        // צ'אנק מלפני שנשמר hash
+                        hash = ContentHash.of(rs.getString("text") == null ? "" : rs.getString("text"));
+                    }
+                    current.computeIfAbsent(hash, h -> new ArrayDeque<>())
+                            .add(new StoredChunk(rs.getLong("id"), rs.getInt("chunk_index")));
+                    currentCount[0]++;
+                }, pdfId);
+
+        List<String> hashes = new ArrayList<>(texts.size());
+        StoredChunk[] kept = new StoredChunk[texts.size()];
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String hash = ContentHash.of(texts.get(i));
+            hashes.add(hash);
+            ArrayDeque<StoredChunk> matches = current.get(hash);
+            if (matches != null && !matches.isEmpty()) {
+                kept[i] = matches.poll();
+            } else {
+                changed.add(i);
+            }
+        }
+        List<Long> removed = new ArrayList<>();
+        current.values().forEach(rest -> rest.forEach(chunk -> removed.add(chunk.id)));
+
+        // רק הצ'אנקים החדשים נשלחים ל-embedding, מחוץ לטרנזקציה
+        float[][] embeddings = new float[texts.size()][];
+        int[] position = {0};
+        int[] failed = {0};
+        progress.update(0, changed.size());
+        embeddingPipeline.run(changed.stream().map(texts::get).iterator(), (text, result) -> {
+            int i = changed.get(position[0]++);
+            progress.update(position[0], changed.size());
+            if (result.isSuccess()) {
+                embeddings[i] = result.getEmbedding();
+            } else {
+                logger.error("Embedding generation failed for chunk {} of PDF {}: {}", i, pdfId, result.getError());
+                failed[0]++;
+            }
+        });
+        if (failed[0] > 0) {
+            // בלי זה ה-hash החדש היה נשמר והעלאה חוזרת של אותו קובץ הייתה "ללא שינוי"
+            throw new IngestionException(failed[0] + " of " + changed.size() + " changed chunks of PDF " + pdfId
+                    + " could not be embedded; keeping the previous revision");
+        }
+
+        Map<String, Integer> summary = new LinkedHashMap<>();
+        boolean[] chunksChanged = {false};
+        transaction.executeWithoutResult(status -> {
+            String storedHash = jdbcTemplate.queryForObject(
+                    "SELECT content_hash FROM pdf_documents WHERE id = ? FOR UPDATE", String.class, pdfId);
+            if (!Objects.equals(storedHash, document.getContentHash())) {
+                throw new IngestionException("PDF " + pdfId + " changed while its new revision was processed");
+            }
+
+            if (!removed.isEmpty()) {
+                jdbcTemplate.update("DELETE FROM pdf_chunks WHERE id = ANY(CAST(? AS bigint[]))", idArray(removed));
+            }
+
+            // אינדקסים רציפים לפי הסדר החדש
+            List<Object[]> moves = new ArrayList<>();
+            List<PdfChunk> inserts = new ArrayList<>();
+            int index = 0;
+            for (int i = 0; i < texts.size(); i++) {
+                if (kept[i] != null) {
+                    if (kept[i].chunkIndex != index) {
+                        moves.add(new Object[]{index, kept[i].id});
+                    }
+                    index++;
+                } else {
+                    PdfChunk chunk = new PdfChunk();
+                    chunk.setText(texts.get(i));
+                    chunk.setContentHash(hashes.get(i));
+                    chunk.setChunkIndex(index++);
+                    chunk.setPdfDocument(document);
+                    chunk.setEmbedding(embeddings[i]);
+                    inserts.add(chunk);
+                }
+            }
+            chunkWriter.write(inserts);
+            Map<Long, HnswVectorStore.IndexedEmbedding> added = new LinkedHashMap<>();
+            for (PdfChunk chunk : inserts) {
+                added.put(chunk.getId(), new HnswVectorStore.IndexedEmbedding(chunk.getChunkIndex(), chunk.getEmbedding()));
+            }
+            if (!moves.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE pdf_chunks SET chunk_index = ? WHERE id = ?", moves);
+            }
+            jdbcTemplate.update("UPDATE pdf_documents SET content_hash = ?, file_name = ?, status = 'READY' WHERE id = ?",
+                    contentHash, fileName, pdfId);
+
+            chunksChanged[0] = !removed.isEmpty() || !moves.isEmpty() || !added.isEmpty();
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    answerCache.invalidateDocument(pdfId);
+                    semanticAnswerCache.invalidateDocument(pdfId);
+                    if (chunksChanged[0]) {
+                        memoryVectorStore.invalidate(pdfId);
+                        hnswVectorStore.applyRevision(pdfId, removed, added);
+                    }
+                }
+            });
+
+            summary.put("chunks", index);
+            summary.put("kept", texts.size() - changed.size());
+            summary.put("moved", moves.size());
+            summary.put("added", added.size());
+            summary.put("removed", removed.size());
+        });
+
+        if (chunksChanged[0]) {
+            // קריאה מחדש של כל ה-embeddings - מחוץ לטרנזקציה שמחזיקה את נעילת המסמך
+            try {
+                sectionService.rebuild(pdfId);
+            } catch (RuntimeException e) {
+                logger.warn("Rebuilding the sections of PDF {} failed; hierarchical retrieval uses the previous ones " +
+                        "until POST /api/admin/sections/{}/rebuild", pdfId, pdfId, e);
+            }
+        }
+
+        logger.info("PDF {} replaced: {} chunks before, {}", pdfId, currentCount[0], summary);
+        return summary;
+    }
+
+    private static String idArray(List<Long> ids) {
+        StringJoiner joiner = new StringJoiner(",", "{", "}");
+        for (Long id : ids) {
+            joiner.add(Long.toString(id));
+        }
+        return joiner.toString();
+    }
+
+    private static final class StoredChunk {
+        private final long id;
+        private final int chunkIndex;
+
+        private StoredChunk(long id, int chunkIndex) {
+            this.id = id;
+            this.chunkIndex = chunkIndex;
+        }
+    }
+}
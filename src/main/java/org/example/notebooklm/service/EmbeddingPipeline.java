@@ -0,0 +1,118 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.exception.IngestionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * Concurrent embedding stage for ingestion.
+ * Chunks are pulled lazily from the source, grouped into batches and embedded on
+ * the embedding executor, with at most {@code ingestion.embedding.max-in-flight}
+ * batches outstanding per call. Results are handed to the consumer on the calling
+ * thread in source order, so chunk indexes stay stable and the consumer can use
+ * the caller's transaction. When the window is full the source is not read again
+ * until the oldest batch completes, which keeps chunking from running ahead.
+ */
+@Component
+public class EmbeddingPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingPipeline.class);
+
+    private final EmbeddingService embeddingService;
+    private final AsyncTaskExecutor executor;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    public EmbeddingPipeline(EmbeddingService embeddingService,
+                             @Qualifier("embeddingExecutor") AsyncTaskExecutor executor,
+                             @Value("${ingestion.embedding.batch-size:32}") int batchSize,
+                             @Value("${ingestion.embedding.max-in-flight:8}") int maxInFlight) {
+        this.embeddingService = embeddingService;
+        this.executor = executor;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Embeds every chunk from {@code chunks} and passes each (text, result) pair to
+     * {@code consumer} in the original order.
+     *
+     * @return number of chunks processed
+     */
+    public int run(Iterator<String> chunks, BiConsumer<String, EmbeddingResult> consumer) {
+        Deque<PendingBatch> inFlight = new ArrayDeque<>();
+        int processed = 0;
+
+        try {
+            while (chunks.hasNext()) {
+                List<String> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && chunks.hasNext()) {
+                    batch.add(chunks.next());
+                }
+
+                while (inFlight.size() >= maxInFlight) {
+                    processed += drain(inFlight.removeFirst(), consumer);
+                }
+
+                Future<List<EmbeddingResult>> future =
+                        executor.submit(() -> embeddingService.generateEmbeddings(batch));
+                inFlight.addLast(new PendingBatch(batch, future));
+            }
+
+            while (!inFlight.isEmpty()) {
+                processed += drain(inFlight.removeFirst(), consumer);
+            }
+            return processed;
+        } finally {
+            // כשל בצרכן (למשל שמירה ל-DB) - לא ממשיכים לשלם על קריאות שאף אחד לא יקרא
+            for (PendingBatch pending : inFlight) {
+                pending.future.cancel(true);
+            }
+        }
+    }
+
+    private int drain(PendingBatch pending, BiConsumer<String, EmbeddingResult> consumer) {
+        List<EmbeddingResult> results;
+        try {
+            results = pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestionException("Interrupted while waiting for embeddings", e);
+        } catch (ExecutionException e) {
+            logger.error("Embedding batch of {} chunks failed", pending.texts.size(), e.getCause());
+            EmbeddingResult failure = EmbeddingResult.failure("Batch failed: " + e.getCause().getMessage());
+            results = new ArrayList<>(pending.texts.size());
+            for (int i = 0; i < pending.texts.size(); i++) {
+                results.add(failure);
+            }
+        }
+
+        for (int i = 0; i < pending.texts.size(); i++) {
+            consumer.accept(pending.texts.get(i), results.get(i));
+        }
+        return pending.texts.size();
+    }
+
+    private static final class PendingBatch {
+        private final List<String> texts;
+        private final Future<List<EmbeddingResult>> future;
+
+        private PendingBatch(List<String> texts, Future<List<EmbeddingResult>> future) {
+            this.texts = texts;
+            this.future = future;
+        }
+    }
+}
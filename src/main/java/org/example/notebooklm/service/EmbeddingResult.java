@@ -0,0 +1,42 @@
+package org.example.notebooklm.service;
+
+/**
+ * Outcome of embedding a single text as part of a batch.
+ * Holds either the embedding vector or the reason it could not be produced,
+ * so one bad item does not hide the results of the rest of the batch.
+ */
+public final class EmbeddingResult {
+
+    private final float[] embedding;
+    private final String error;
+
+    private EmbeddingResult(float[] embedding, String error) {
+        this.embedding = embedding;
+        this.error = error;
+    }
+
+    public static EmbeddingResult success(float[] embedding) {
+        return new EmbeddingResult(embedding, null);
+    }
+
+    public static EmbeddingResult failure(String error) {
+        return new EmbeddingResult(null, error);
+    }
+
+    /**
+     * Wraps the return value of {@link EmbeddingService#generateEmbedding(String)},
+     * which signals failure with {@code null} or an empty array.
+     */
+    public static EmbeddingResult of(float[] embedding) {
+        if (embedding == null || embedding.length == 0) {
+            return failure("Embedding generation failed");
+        }
+        return success(embedding);
+    }
+
+    public boolean isSuccess() { return embedding != null; }
+
+    public float[] getEmbedding() { return embedding; }
+
+    public String getError() { return error; }
+}
@@ -1,5 +1,34 @@
 package org.example.notebooklm.service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface EmbeddingService {
     float[] generateEmbedding(String text);
-}
\ No newline at end of file
+
+    /**
+     * Name of the model producing the vectors; vectors from different models are not comparable.
+     */
+    String getModelName();
+
+    /**
+     * Embeds a user question. Kept separate from document content so implementations
+     * can cache questions under their own policy.
+     */
+    default float[] generateQueryEmbedding(String question) {
+        return generateEmbedding(question);
+    }
+
+    /**
+     * Embeds several texts, using as few remote calls as the implementation allows.
+     * The returned list is aligned with {@code texts}: element i always belongs to
+     * {@code texts.get(i)} and reports either its embedding or why it failed.
+     */
+    default List<EmbeddingResult> generateEmbeddings(List<String> texts) {
+        List<EmbeddingResult> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            results.add(EmbeddingResult.of(generateEmbedding(text)));
+        }
+        return results;
+    }
+}
@@ -1,7 +1,20 @@
 package org.example.notebooklm.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.util.Timeout;
+import org.example.notebooklm.exception.GeminiException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -12,86 +25,209 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 @Service
 public class GeminiAnswerService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeminiAnswerService.class);
 
+    // שימוש בגרסת המודל המעודכנת והיציבה יותר
+    private static final String DEFAULT_MODEL_URL = "https://generativelanguage.googleapis.com/v1/models/gemini-1.5-flash-latest";
+
     private final SecretService secretService;
     private final RestTemplate restTemplate;
-
-    public GeminiAnswerService(SecretService secretService) {
+    private final ObjectMapper objectMapper;
+    private final CloseableHttpClient httpClient;
+    private final RequestConfig streamRequestConfig;
+    private final String modelUrl;
+
+    public GeminiAnswerService(SecretService secretService,
+                               @Qualifier("geminiAnswerRestTemplate") RestTemplate restTemplate,
+                               ObjectMapper objectMapper,
+                               CloseableHttpClient geminiHttpClient,
+                               @Value("${gemini.http.answer.response-timeout-ms:120000}") long responseTimeoutMs,
+                               @Value("${gemini.http.pool.lease-timeout-ms:5000}") long leaseTimeoutMs,
+                               @Value("${gemini.answer.model-url:" + DEFAULT_MODEL_URL + "}") String modelUrl) {
         this.secretService = secretService;
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.httpClient = geminiHttpClient;
+        this.streamRequestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(leaseTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                .build();
+        this.modelUrl = modelUrl;
     }
 
     public String answer(String question, String context) {
-        String apiKey = secretService.getGeminiKey();
-        // שימוש בגרסת המודל המעודכנת והיציבה יותר
-        String url = "https://generativelanguage.googleapis.com/v1/models/gemini-1.5-flash-latest:generateContent?key=" + apiKey;
-
-        String prompt = "Context: " + context + "\nQuestion: " + question;
+        try {
+            return generateAnswer(question, context);
+        } catch (GeminiException e) {
+            return e.getMessage();
+        }
+    }
 
-        Map<String, Object> requestBody = Map.of(
-                "contents", List.of(
-                        Map.of("parts", List.of(Map.of("text", prompt)))
-                )
-        );
+    /**
+     * Like {@link #answer}, but failures are thrown instead of being returned as
+     * answer text, so callers can tell a real answer from an error message.
+     *
+     * @throws GeminiException if the call fails or the response has no text
+     */
+    public String generateAnswer(String question, String context) {
+        String url = modelUrl + ":generateContent?key=" + secretService.getGeminiKey();
+        Map<String, Object> requestBody = buildRequest(question, context);
 
+        ResponseEntity<Map<String, Object>> response;
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
 
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+            response = restTemplate.exchange(
                     url,
                     HttpMethod.POST,
                     entity,
                     new ParameterizedTypeReference<>() {
                     }
             );
-            if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
-                logger.error("Gemini HTTP error: status={} body={}", response.getStatusCode(), response.getBody());
-                return "Gemini error: " + response.getStatusCode();
-            }
-
-            return extractText(response.getBody());
         } catch (Exception e) {
             logger.error("Error calling Gemini", e);
-            return "Error: " + e.getMessage();
+            throw new GeminiException("Error: " + e.getMessage(), e);
+        }
+
+        if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
+            logger.error("Gemini HTTP error: status={} body={}", response.getStatusCode(), response.getBody());
+            throw new GeminiException("Gemini error: " + response.getStatusCode());
+        }
+
+        return extractText(response.getBody());
+    }
+
+    /**
+     * Streams the answer through streamGenerateContent (server-sent events), passing
+     * each text fragment to {@code onChunk} as soon as Gemini emits it.
+     * Reading stops when {@code cancelled} reports true or {@code onChunk} throws; the
+     * request is then aborted, which drops the connection instead of draining the rest of
+     * the body, so Gemini stops generating and the thread returns right away.
+     * Runs on the pooled client directly: RestTemplate would consume the remaining
+     * body when closing the response.
+     *
+     * @throws GeminiException if the call fails or Gemini answers with an error status
+     */
+    public void streamAnswer(String question, String context,
+                             Consumer<String> onChunk, BooleanSupplier cancelled) {
+        URI uri = URI.create(modelUrl + ":streamGenerateContent?alt=sse&key=" + secretService.getGeminiKey());
+        HttpPost request = new HttpPost(uri);
+        request.setConfig(streamRequestConfig);
+
+        boolean finished = false;
+        ClassicHttpResponse response = null;
+        try {
+            request.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(buildRequest(question, context)),
+                    ContentType.APPLICATION_JSON));
+            response = httpClient.executeOpen(HttpHost.create(uri), request, null);
+            if (response.getCode() != HttpStatus.OK.value()) {
+                logger.error("Gemini streaming HTTP error: status={}", response.getCode());
+                throw new GeminiException("Gemini error: " + response.getCode());
+            }
+
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8));
+            String line;
+            while (!cancelled.getAsBoolean() && (line = reader.readLine()) != null) {
+                // כל אירוע SSE מגיע בשורת "data: {...}" עם תשובה חלקית
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String text = extractStreamText(objectMapper.readTree(line.substring(5).trim()));
+                if (!text.isEmpty()) {
+                    onChunk.accept(text);
+                }
+            }
+            finished = !cancelled.getAsBoolean();
+        } catch (IOException e) {
+            throw new GeminiException("Error streaming from Gemini: " + e.getMessage(), e);
+        } finally {
+            if (!finished) {
+                // ניתוק החיבור לפני close - אחרת close קורא את כל שאר התשובה
+                request.cancel();
+            }
+            closeQuietly(response);
+        }
+    }
+
+    private static void closeQuietly(ClassicHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            response.close();
+        } catch (IOException e) {
+            // החיבור כבר נותק
         }
     }
 
+    private Map<String, Object> buildRequest(String question, String context) {
+        String prompt = "Context: " + context + "\nQuestion: " + question;
+
+        return Map.of(
+                "contents", List.of(
+                        Map.of("parts", List.of(Map.of("text", prompt)))
+                )
+        );
+    }
+
+    private String extractStreamText(JsonNode event) {
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : event.path("candidates").path(0).path("content").path("parts")) {
+            text.append(part.path("text").asText());
+        }
+        return text.toString();
+    }
+
     /**
      * Extract the generated text from Gemini's response map.
      */
     @SuppressWarnings("unchecked")
     private String extractText(Map<String, Object> body) {
+        Object textObj;
         try {
             List<Map<String, Object>> candidates = (List<Map<String, Object>>) body.get("candidates");
             if (candidates == null || candidates.isEmpty()) {
-                return "No candidates returned from Gemini.";
+                throw new GeminiException("No candidates returned from Gemini.");
             }
 
             Map<String, Object> firstCandidate = candidates.get(0);
             Map<String, Object> content = (Map<String, Object>) firstCandidate.get("content");
             if (content == null) {
-                return "No content in Gemini response.";
+                throw new GeminiException("No content in Gemini response.");
             }
 
             List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
             if (parts == null || parts.isEmpty()) {
-                return "No parts in Gemini response.";
+                throw new GeminiException("No parts in Gemini response.");
             }
 
-            Object textObj = parts.get(0).get("text");
-            return textObj != null ? textObj.toString() : "Empty Gemini response.";
+            textObj = parts.get(0).get("text");
+        } catch (GeminiException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Failed to parse Gemini response", e);
-            return "Failed to parse Gemini response: " + e.getMessage();
+            throw new GeminiException("Failed to parse Gemini response: " + e.getMessage(), e);
+        }
+
+        if (textObj == null) {
+            throw new GeminiException("Empty Gemini response.");
         }
+        return textObj.toString();
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,8 @@ package org.example.notebooklm.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.annotation.Primary;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -12,27 +13,43 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 @Service
-@Primary // מבטיח שזה השירות שיוזרק כברירת מחדל
 public class GeminiEmbeddingService implements EmbeddingService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeminiEmbeddingService.class);
 
-    private final SecretService secretService;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private static final String MODEL = "text-embedding-004";
+    private static final String BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models/" + MODEL;
 
-    public GeminiEmbeddingService(SecretService secretService) {
+    private final SecretService secretService;
+    private final RestTemplate restTemplate;
+    private final int maxBatchItems;
+    private final long maxBatchBytes;
+
+    public GeminiEmbeddingService(SecretService secretService,
+                                  @Qualifier("geminiEmbeddingRestTemplate") RestTemplate restTemplate,
+                                  @Value("${gemini.embedding.batch.max-items:100}") int maxBatchItems,
+                                  @Value("${gemini.embedding.batch.max-bytes:1000000}") long maxBatchBytes) {
         this.secretService = secretService;
+        this.restTemplate = restTemplate;
+        this.maxBatchItems = Math.max(1, maxBatchItems);
+        this.maxBatchBytes = Math.max(1, maxBatchBytes);
+    }
+
+    @Override
+    public String getModelName() {
+        return MODEL;
     }
 
     @Override
     public float[] generateEmbedding(String text) {
         try {
-            String url = "https://generativelanguage.googleapis.com/v1beta/models/text-embedding-004:embedContent?key="
-                    + secretService.getGeminiKey();
+            String url = BASE_URL + ":embedContent?key=" + secretService.getGeminiKey();
 
             Map<String, Object> request = Map.of(
                     "content", Map.of(
@@ -40,50 +57,146 @@ public class GeminiEmbeddingService implements EmbeddingService {
                     )
             );
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    entity,
-                    new ParameterizedTypeReference<>() {
-                    }
-            );
-
-            Map<String, Object> body = response.getBody();
+            Map<String, Object> body = post(url, request);
             if (body == null || body.containsKey("error")) {
                 logger.error("Gemini error: {}", body != null ? body.get("error") : "null body");
                 return null;
             }
 
-            Object embeddingObj = body.get("embedding");
-            if (!(embeddingObj instanceof Map<?, ?> embeddingMapRaw)) {
-                logger.error("Unexpected embedding payload: {}", embeddingObj);
-                return null;
-            }
-            @SuppressWarnings("unchecked")
-            Map<String, Object> embeddingMap = (Map<String, Object>) embeddingMapRaw;
-            Object valuesObj = embeddingMap.get("values");
-            if (!(valuesObj instanceof List<?> values)) {
-                logger.error("Unexpected embedding values payload: {}", valuesObj);
-                return null;
-            }
+            return toVector(body.get("embedding"));
 
-            if (values == null) return null;
+        } catch (Exception e) {
+            logger.error("Failed to generate embedding", e);
+            return null;
+        }
+    }
 
-            // המרה ידנית ל-float[] כדי להתאים ל-Entity ולמנוע שגיאות Casting
-            float[] floatVector = new float[values.size()];
-            for (int i = 0; i < values.size(); i++) {
-                floatVector[i] = ((Number) values.get(i)).floatValue();
+    /**
+     * Embeds the texts through the batchEmbedContents endpoint.
+     * Texts are grouped into requests bounded by {@code gemini.embedding.batch.max-items}
+     * and by the UTF-8 size of their text ({@code gemini.embedding.batch.max-bytes}).
+     * If a whole batch is rejected, its items are retried one by one so a single bad
+     * chunk only fails itself.
+     */
+    @Override
+    public List<EmbeddingResult> generateEmbeddings(List<String> texts) {
+        List<EmbeddingResult> results = new ArrayList<>(texts.size());
+
+        int start = 0;
+        while (start < texts.size()) {
+            int end = start;
+            long bytes = 0;
+            while (end < texts.size() && end - start < maxBatchItems) {
+                long size = utf8Length(texts.get(end));
+                if (end > start && bytes + size > maxBatchBytes) {
+                    break;
+                }
+                bytes += size;
+                end++;
             }
 
-            return floatVector;
+            results.addAll(embedBatch(texts.subList(start, end)));
+            start = end;
+        }
 
+        return results;
+    }
+
+    private List<EmbeddingResult> embedBatch(List<String> batch) {
+        List<float[]> vectors = null;
+        try {
+            vectors = requestBatch(batch);
         } catch (Exception e) {
-            logger.error("Failed to generate embedding", e);
+            logger.error("Batch embedding request for {} texts failed", batch.size(), e);
+        }
+
+        if (vectors == null) {
+            logger.warn("Falling back to single requests for a batch of {} texts", batch.size());
+            List<EmbeddingResult> results = new ArrayList<>(batch.size());
+            for (String text : batch) {
+                results.add(EmbeddingResult.of(generateEmbedding(text)));
+            }
+            return results;
+        }
+
+        List<EmbeddingResult> results = new ArrayList<>(batch.size());
+        for (float[] vector : vectors) {
+            results.add(vector != null
+                    ? EmbeddingResult.success(vector)
+                    : EmbeddingResult.failure("Gemini returned no values for this item"));
+        }
+        return results;
+    }
+
+    /**
+     * Sends one batchEmbedContents call.
+     * Returns one (possibly null) vector per input, or null if the batch as a whole failed.
+     */
+    private List<float[]> requestBatch(List<String> batch) {
+        String url = BASE_URL + ":batchEmbedContents?key=" + secretService.getGeminiKey();
+
+        List<Map<String, Object>> requests = new ArrayList<>(batch.size());
+        for (String text : batch) {
+            requests.add(Map.of(
+                    "model", "models/" + MODEL,
+                    "content", Map.of("parts", List.of(Map.of("text", text)))
+            ));
+        }
+
+        Map<String, Object> body = post(url, Map.of("requests", requests));
+        if (body == null || body.containsKey("error")) {
+            logger.error("Gemini batch error: {}", body != null ? body.get("error") : "null body");
             return null;
         }
+
+        if (!(body.get("embeddings") instanceof List<?> embeddings) || embeddings.size() != batch.size()) {
+            logger.error("Unexpected batch embedding payload for {} texts", batch.size());
+            return null;
+        }
+
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (Object embedding : embeddings) {
+            vectors.add(toVector(embedding));
+        }
+        return vectors;
+    }
+
+    private Map<String, Object> post(String url, Map<String, Object> request) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(request, headers);
+        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+                url,
+                HttpMethod.POST,
+                entity,
+                new ParameterizedTypeReference<>() {
+                }
+        );
+        return response.getBody();
+    }
+
+    private float[] toVector(Object embeddingObj) {
+        if (!(embeddingObj instanceof Map<?, ?> embeddingMap)) {
+            logger.error("Unexpected embedding payload: {}", embeddingObj);
+            return null;
+        }
+        Object valuesObj = embeddingMap.get("values");
+        if (!(valuesObj instanceof List<?> values)) {
+            logger.error("Unexpected embedding values payload: {}", valuesObj);
+            return null;
+        }
+
+        // המרה ידנית ל-float[] כדי להתאים ל-Entity ולמנוע שגיאות Casting
+        float[] floatVector = new float[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            floatVector[i] = ((Number) values.get(i)).floatValue();
+        }
+
+        return floatVector;
+    }
+
+    private static long utf8Length(String text) {
+        return text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,379 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.exception.DocumentNotReadyException;
+import org.example.notebooklm.exception.IngestionException;
+import org.example.notebooklm.exception.ResourceNotFoundException;
+import org.example.notebooklm.model.DocumentStatus;
+import org.example.notebooklm.model.IngestionJob;
+import org.example.notebooklm.model.IngestionJobPayload;
+import org.example.notebooklm.model.IngestionJobStatus;
+import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.repository.IngestionJobPayloadRepository;
+import org.example.notebooklm.repository.IngestionJobRepository;
+import org.example.notebooklm.repository.PdfDocumentRepository;
+import org.example.notebooklm.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Postgres-backed queue of PDF ingestions.
+ * Uploads are stored as QUEUED jobs; workers on any node claim the oldest available job with
+ * {@code FOR UPDATE SKIP LOCKED}, so concurrent workers never block on or double-claim a job.
+ * A running job is owned by the worker named in {@code locked_by} and kept alive by progress
+ * heartbeats; once its heartbeat is older than {@code ingestion.jobs.stale-after-seconds} the
+ * job is claimed again, which is how jobs of a crashed node are retried.
+ */
+@Service
+public class IngestionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionJobService.class);
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private static final String CLAIM_SQL =
+            "UPDATE ingestion_jobs SET status = 'RUNNING', attempts = attempts + 1, locked_by = ?, " +
+                    "started_at = LOCALTIMESTAMP, heartbeat_at = LOCALTIMESTAMP " +
+                    "WHERE id = (" +
+                    "SELECT id FROM ingestion_jobs " +
+                    "WHERE (status = 'QUEUED' AND available_at <= LOCALTIMESTAMP) " +
+                    "OR (status = 'RUNNING' AND heartbeat_at < LOCALTIMESTAMP - ? * INTERVAL '1 second') " +
+                    "ORDER BY id " +
+                    "LIMIT 1 " +
+                    "FOR UPDATE SKIP LOCKED) " +
+                    "RETURNING id, document_id, attempts, file_name, content_hash, replace_existing";
+
+    // מחזיר שורה רק אם העבודה עדיין שלנו; אחרת עובד אחר לקח אותה
+    private static final String HEARTBEAT_SQL =
+            "UPDATE ingestion_jobs SET chunks_embedded = ?, chunks_total = ?, heartbeat_at = LOCALTIMESTAMP " +
+                    "WHERE id = ? AND locked_by = ? AND status = 'RUNNING' " +
+                    "RETURNING cancel_requested";
+
+    private final IngestionJobRepository jobRepository;
+    private final IngestionJobPayloadRepository payloadRepository;
+    private final PdfDocumentRepository documentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate separateTransaction;
+    private final int maxAttempts;
+    private final long staleAfterSeconds;
+    private final long retryDelaySeconds;
+
+    public IngestionJobService(IngestionJobRepository jobRepository,
+                               IngestionJobPayloadRepository payloadRepository,
+                               PdfDocumentRepository documentRepository,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${ingestion.jobs.max-attempts:3}") int maxAttempts,
+                               @Value("${ingestion.jobs.stale-after-seconds:300}") long staleAfterSeconds,
+                               @Value("${ingestion.jobs.retry-delay-seconds:30}") long retryDelaySeconds) {
+        this.jobRepository = jobRepository;
+        this.payloadRepository = payloadRepository;
+        this.documentRepository = documentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        // heartbeat נכתב ונראה מיד, גם כשהעובד נמצא בתוך הטרנזקציה הארוכה של processPdf
+        this.separateTransaction = new TransactionTemplate(transactionManager);
+        this.separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.staleAfterSeconds = Math.max(1, staleAfterSeconds);
+        this.retryDelaySeconds = Math.max(0, retryDelaySeconds);
+    }
+
+    /**
+     * Stores the upload as a PENDING document plus a QUEUED job holding the file.
+     */
+    @Transactional
+    public IngestionJob enqueue(MultipartFile file) {
+        byte[] content = read(file);
+        String contentHash = ContentHash.of(content);
+
+        PdfDocument document = new PdfDocument();
+        document.setFileName(file.getOriginalFilename());
+        document.setStatus(DocumentStatus.PENDING);
+        document.setContentHash(contentHash);
+        document = documentRepository.save(document);
+
+        return queue(document.getId(), file.getOriginalFilename(), content, contentHash, false);
+    }
+
+    /**
+     * Queues a new revision of an existing document. The document keeps answering from its
+     * current chunks until the job swaps in the changed ones.
+     *
+     * @return the job, or null if the file is byte-for-byte the stored revision
+     * @throws DocumentNotReadyException if the document's first ingestion has not finished
+     */
+    @Transactional
+    public IngestionJob enqueueReplacement(Long pdfId, MultipartFile file) {
+        PdfDocument document = documentRepository.findById(pdfId)
+                .orElseThrow(() -> new ResourceNotFoundException("PDF", pdfId));
+        if (!DocumentStatus.isReady(document.getStatus()) && document.getStatus() != DocumentStatus.FAILED) {
+            throw new DocumentNotReadyException(pdfId, document.getStatus());
+        }
+
+        byte[] content = read(file);
+        String contentHash = ContentHash.of(content);
+        if (contentHash.equals(document.getContentHash())) {
+            logger.info("Upload for PDF {} is identical to the stored revision; nothing to do", pdfId);
+            return null;
+        }
+        return queue(pdfId, file.getOriginalFilename(), content, contentHash, true);
+    }
+
+    private IngestionJob queue(Long documentId, String fileName, byte[] content, String contentHash, boolean replace) {
+        LocalDateTime now = LocalDateTime.now();
+        IngestionJob job = new IngestionJob();
+        job.setDocumentId(documentId);
+        job.setFileName(fileName);
+        job.setContentHash(contentHash);
+        job.setReplaceExisting(replace);
+        job.setStatus(IngestionJobStatus.QUEUED);
+        job.setCreatedAt(now);
+        job.setAvailableAt(now);
+        job = jobRepository.save(job);
+
+        IngestionJobPayload payload = new IngestionJobPayload();
+        payload.setJobId(job.getId());
+        payload.setContent(content);
+        payloadRepository.save(payload);
+
+        logger.info("Queued {} job {} for PDF {} ({}, {} bytes)", replace ? "replacement" : "ingestion",
+                job.getId(), documentId, fileName, content.length);
+        return job;
+    }
+
+    private static byte[] read(MultipartFile file) {
+        try {
+            return file.getBytes();
+        } catch (IOException e) {
+            throw new IngestionException("Failed to read uploaded file", e);
+        }
+    }
+
+    public IngestionJob getJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ingestion job", jobId));
+    }
+
+    /**
+     * The 100 most recent jobs, optionally only those in {@code status}.
+     */
+    public List<IngestionJob> listJobs(IngestionJobStatus status) {
+        return status == null
+                ? jobRepository.findTop100ByOrderByIdDesc()
+                : jobRepository.findTop100ByStatusOrderByIdDesc(status);
+    }
+
+    /**
+     * A queued job is cancelled at once and its document removed; a running job is flagged
+     * and stops at its next heartbeat.
+     *
+     * @return the job after the request
+     */
+    public IngestionJob cancel(Long jobId) {
+        transaction.executeWithoutResult(status -> {
+            IngestionJob job = getJob(jobId);
+            if (job.getStatus().isFinished()) {
+                return;
+            }
+            int cancelled = jdbcTemplate.update("UPDATE ingestion_jobs SET status = 'CANCELLED', " +
+                    "finished_at = LOCALTIMESTAMP WHERE id = ? AND status = 'QUEUED'", jobId);
+            if (cancelled > 0) {
+                payloadRepository.deleteById(jobId);
+                if (!job.isReplaceExisting()) {
+                    documentRepository.deleteById(job.getDocumentId());
+                }
+                logger.info("Ingestion job {} cancelled before it started", jobId);
+            } else {
+                jdbcTemplate.update("UPDATE ingestion_jobs SET cancel_requested = TRUE WHERE id = ?", jobId);
+                logger.info("Cancellation requested for running ingestion job {}", jobId);
+            }
+        });
+        return getJob(jobId);
+    }
+
+    /**
+     * Claims the next available job for {@code workerId} and marks its document PROCESSING.
+     *
+     * @return the claimed job, or null if there is nothing to do
+     */
+    public ClaimedJob claim(String workerId) {
+        return transaction.execute(status -> {
+            List<ClaimedJob> claimed = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new ClaimedJob(
+                    rs.getLong("id"), rs.getLong("document_id"), rs.getInt("attempts"), workerId,
+                    rs.getString("file_name"), rs.getString("content_hash"), rs.getBoolean("replace_existing")),
+                    workerId, staleAfterSeconds);
+            if (claimed.isEmpty()) {
+                return null;
+            }
+            ClaimedJob job = claimed.get(0);
+            if (job.isReplace()) {
+                // מסמך שמוחלף ממשיך לענות מהגרסה הקיימת
+                return job;
+            }
+            jdbcTemplate.update("UPDATE pdf_documents SET status = 'PROCESSING' WHERE id = ? AND status <> 'READY'",
+                    job.getDocumentId());
+            return job;
+        });
+    }
+
+    /**
+     * Records progress and renews the job's lease, in its own transaction.
+     *
+     * @return false if the job was cancelled or claimed by another worker and should stop
+     */
+    public boolean heartbeat(ClaimedJob job, int chunksEmbedded, int chunksTotal) {
+        List<Boolean> cancelRequested = separateTransaction.execute(status -> jdbcTemplate.query(HEARTBEAT_SQL,
+                (rs, rowNum) -> rs.getBoolean("cancel_requested"),
+                chunksEmbedded, chunksTotal, job.getId(), job.getWorkerId()));
+        if (cancelRequested == null || cancelRequested.isEmpty()) {
+            logger.warn("Ingestion job {} is no longer owned by {}", job.getId(), job.getWorkerId());
+            return false;
+        }
+        return !cancelRequested.get(0);
+    }
+
+    public byte[] loadPayload(ClaimedJob job) {
+        return payloadRepository.findById(job.getId())
+                .map(IngestionJobPayload::getContent)
+                .orElseThrow(() -> new IngestionException("Uploaded file of job " + job.getId() + " is missing"));
+    }
+
+    public void complete(ClaimedJob job) {
+        finish(job, IngestionJobStatus.SUCCEEDED, null);
+        logger.info("Ingestion job {} succeeded (attempt {})", job.getId(), job.getAttempts());
+    }
+
+    /**
+     * Marks a job whose worker stopped on a cancellation request.
+     */
+    public void cancelled(ClaimedJob job) {
+        finish(job, IngestionJobStatus.CANCELLED, null);
+        logger.info("Ingestion job {} cancelled", job.getId());
+    }
+
+    /**
+     * Requeues the job with a growing delay, or fails it (and its document) after the last attempt.
+     */
+    public void fail(ClaimedJob job, Exception cause) {
+        String error = truncate(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName());
+        if (job.getAttempts() < maxAttempts) {
+            long delay = retryDelaySeconds * job.getAttempts();
+            transaction.executeWithoutResult(status -> {
+                int updated = jdbcTemplate.update("UPDATE ingestion_jobs SET status = 'QUEUED', locked_by = NULL, " +
+                                "error = ?, available_at = LOCALTIMESTAMP + ? * INTERVAL '1 second' " +
+                                "WHERE id = ? AND locked_by = ? AND status = 'RUNNING'",
+                        error, delay, job.getId(), job.getWorkerId());
+                if (updated > 0 && !job.isReplace()) {
+                    documentRepository.updateStatus(job.getDocumentId(), DocumentStatus.PENDING);
+                }
+            });
+            logger.warn("Ingestion job {} failed on attempt {} of {}, retrying in {} s: {}",
+                    job.getId(), job.getAttempts(), maxAttempts, delay, error);
+            return;
+        }
+        finish(job, IngestionJobStatus.FAILED, error);
+        logger.error("Ingestion job {} failed after {} attempts: {}", job.getId(), job.getAttempts(), error);
+    }
+
+    /**
+     * True if the job has already used up its attempts (e.g. it crashed the node each time).
+     */
+    public boolean attemptsExhausted(ClaimedJob job) {
+        return job.getAttempts() > maxAttempts;
+    }
+
+    public Map<String, Object> toProgress(IngestionJob job) {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("jobId", job.getId());
+        progress.put("documentId", job.getDocumentId());
+        progress.put("fileName", job.getFileName());
+        progress.put("replace", job.isReplaceExisting());
+        progress.put("status", job.getStatus());
+        progress.put("chunksEmbedded", job.getChunksEmbedded());
+        progress.put("chunksTotal", job.getChunksTotal());
+        progress.put("percent", job.getChunksTotal() == 0 ? 0.0
+                : Math.round(1000.0 * job.getChunksEmbedded() / job.getChunksTotal()) / 10.0);
+        progress.put("attempts", job.getAttempts());
+        progress.put("cancelRequested", job.isCancelRequested());
+        progress.put("error", job.getError());
+        progress.put("createdAt", job.getCreatedAt());
+        progress.put("startedAt", job.getStartedAt());
+        progress.put("finishedAt", job.getFinishedAt());
+        return progress;
+    }
+
+    private void finish(ClaimedJob job, IngestionJobStatus jobStatus, String error) {
+        transaction.executeWithoutResult(status -> {
+            int updated = jdbcTemplate.update("UPDATE ingestion_jobs SET status = ?, error = ?, " +
+                            "finished_at = LOCALTIMESTAMP, locked_by = NULL " +
+                            "WHERE id = ? AND locked_by = ? AND status = 'RUNNING'",
+                    jobStatus.name(), error, job.getId(), job.getWorkerId());
+            if (updated == 0) {
+                // עובד אחר לקח את העבודה בינתיים - הוא יסיים אותה
+                return;
+            }
+            payloadRepository.deleteById(job.getId());
+            if (job.isReplace()) {
+                // הגרסה הקודמת נשארת כפי שהיא
+                return;
+            }
+            if (jobStatus == IngestionJobStatus.FAILED) {
+                documentRepository.updateStatus(job.getDocumentId(), DocumentStatus.FAILED);
+            } else if (jobStatus == IngestionJobStatus.CANCELLED) {
+                // הצ'אנקים החלקיים כבר התגלגלו אחורה; נשארה רק שורת המסמך
+                documentRepository.deleteById(job.getDocumentId());
+            }
+        });
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * A job held by one worker; {@code workerId} is the lease owner recorded in {@code locked_by}.
+     */
+    public static final class ClaimedJob {
+
+        private final long id;
+        private final long documentId;
+        private final int attempts;
+        private final String workerId;
+        private final String fileName;
+        private final String contentHash;
+        private final boolean replace;
+
+        public ClaimedJob(long id, long documentId, int attempts, String workerId,
+                          String fileName, String contentHash, boolean replace) {
+            this.id = id;
+            this.documentId = documentId;
+            this.attempts = attempts;
+            this.workerId = workerId;
+            this.fileName = fileName;
+            this.contentHash = contentHash;
+            this.replace = replace;
+        }
+
+        public long getId() { return id; }
+        public long getDocumentId() { return documentId; }
+        public int getAttempts() { return attempts; }
+        public String getWorkerId() { return workerId; }
+        public String getFileName() { return fileName; }
+        public String getContentHash() { return contentHash; }
+        public boolean isReplace() { return replace; }
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.notebooklm.service;
+
+/**
+ * Receives progress while a document is processed.
+ * Implementations may throw {@link java.util.concurrent.CancellationException} to stop the
+ * ingestion; the processing transaction then rolls back and no chunks are kept.
+ */
+@FunctionalInterface
+public interface IngestionProgress {
+
+    IngestionProgress NONE = (embedded, total) -> { };
+
+    /**
+     * Called after every chunk. {@code total} counts the chunks produced so far; it reaches
+     * its final value once the last page has been chunked.
+     */
+    void update(int embedded, int total);
+}
@@ -0,0 +1,209 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.DocumentStatus;
+import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.repository.PdfDocumentRepository;
+import org.example.notebooklm.util.PdfTextExtractor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the ingestion job table. Each of the {@code ingestion.jobs.workers} threads claims
+ * one job at a time, streams the stored PDF's pages into processing, and reports progress through
+ * heartbeats (at most one every {@code ingestion.jobs.heartbeat-interval-ms}). Idle workers
+ * poll every {@code ingestion.jobs.poll-interval-ms}, or sooner when an upload on this node
+ * calls {@link #wakeUp()}.
+ */
+@Component
+public class IngestionWorker implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionWorker.class);
+
+    private final IngestionJobService jobService;
+    private final PdfService pdfService;
+    private final DocumentRevisionService revisionService;
+    private final PdfTextExtractor pdfTextExtractor;
+    private final PdfDocumentRepository documentRepository;
+    private final AsyncTaskExecutor executor;
+    private final boolean enabled;
+    private final int workers;
+    private final long pollIntervalMs;
+    private final long heartbeatIntervalMs;
+    private final String nodeId;
+
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running;
+
+    public IngestionWorker(IngestionJobService jobService,
+                           PdfService pdfService,
+                           DocumentRevisionService revisionService,
+                           PdfTextExtractor pdfTextExtractor,
+                           PdfDocumentRepository documentRepository,
+                           @Qualifier("ingestionExecutor") AsyncTaskExecutor executor,
+                           @Value("${ingestion.jobs.enabled:true}") boolean enabled,
+                           @Value("${ingestion.jobs.workers:2}") int workers,
+                           @Value("${ingestion.jobs.poll-interval-ms:1000}") long pollIntervalMs,
+                           @Value("${ingestion.jobs.heartbeat-interval-ms:2000}") long heartbeatIntervalMs,
+                           @Value("${ingestion.jobs.node-id:}") String nodeId) {
+        this.jobService = jobService;
+        this.pdfService = pdfService;
+        this.revisionService = revisionService;
+        this.pdfTextExtractor = pdfTextExtractor;
+        this.documentRepository = documentRepository;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.workers = Math.max(1, workers);
+        this.pollIntervalMs = Math.max(10, pollIntervalMs);
+        this.heartbeatIntervalMs = Math.max(0, heartbeatIntervalMs);
+        // ברירת מחדל: pid@host, ייחודי לכל מופע של האפליקציה
+        this.nodeId = nodeId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            logger.info("Ingestion workers are disabled on this node");
+            return;
+        }
+        running = true;
+        for (int i = 1; i <= workers; i++) {
+            String workerId = nodeId + "/worker-" + i;
+            executor.execute(() -> loop(workerId));
+        }
+        logger.info("Started {} ingestion workers on {}", workers, nodeId);
+    }
+
+    /**
+     * Lets an idle worker pick up a job that was just queued instead of waiting for the next poll.
+     */
+    public void wakeUp() {
+        wakeUps.release();
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        wakeUps.release(workers);
+    }
+
+    private void loop(String workerId) {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                IngestionJobService.ClaimedJob job = jobService.claim(workerId);
+                if (job != null) {
+                    process(job);
+                    continue;
+                }
+                if (wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS)) {
+                    wakeUps.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // למשל DB לא זמין - ממתינים ומנסים שוב
+                logger.error("Ingestion worker {} failed to poll for jobs", workerId, e);
+                sleepQuietly();
+            }
+        }
+        logger.info("Ingestion worker {} stopped", workerId);
+    }
+
+    private void process(IngestionJobService.ClaimedJob job) {
+        logger.info("Worker {} processing ingestion job {} (PDF {}, attempt {})",
+                job.getWorkerId(), job.getId(), job.getDocumentId(), job.getAttempts());
+        try {
+            if (jobService.attemptsExhausted(job)) {
+                jobService.fail(job, new IllegalStateException("Job was abandoned by its worker too many times"));
+                return;
+            }
+            PdfDocument document = documentRepository.findById(job.getDocumentId()).orElse(null);
+            if (document == null) {
+                jobService.cancelled(job);
+                return;
+            }
+            // ניסיון קודם הספיק לבצע commit לפני שהעובד נפל
+            boolean applied = job.isReplace()
+                    ? job.getContentHash() != null && job.getContentHash().equals(document.getContentHash())
+                    : document.getStatus() == DocumentStatus.READY;
+            if (applied) {
+                jobService.complete(job);
+                return;
+            }
+
+            // PDFBox קורא מקובץ זמני, והעמודים מגיעים ל-chunker תוך כדי החילוץ
+            Path file = pdfTextExtractor.createTempFile();
+            try {
+                Files.write(file, jobService.loadPayload(job));
+                try (PdfTextExtractor.PageStream pages = pdfTextExtractor.open(file)) {
+                    if (job.isReplace()) {
+                        revisionService.replace(document, job.getContentHash(), job.getFileName(),
+                                pages, new HeartbeatProgress(job));
+                    } else {
+                        pdfService.processPdf(document, pages, new HeartbeatProgress(job));
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+            jobService.complete(job);
+        } catch (CancellationException e) {
+            jobService.cancelled(job);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // כיבוי של השרת: העבודה תיאסף מחדש כשה-heartbeat שלה יתיישן
+                logger.warn("Ingestion job {} interrupted by shutdown", job.getId());
+                return;
+            }
+            logger.error("Ingestion job {} failed", job.getId(), e);
+            jobService.fail(job, e);
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throttles progress updates to one heartbeat per interval; stops the ingestion when the
+     * job was cancelled or taken over.
+     */
+    private final class HeartbeatProgress implements IngestionProgress {
+
+        private final IngestionJobService.ClaimedJob job;
+        private long lastHeartbeat;
+
+        private HeartbeatProgress(IngestionJobService.ClaimedJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void update(int embedded, int total) {
+            long now = System.currentTimeMillis();
+            if (embedded != 0 && embedded != total && now - lastHeartbeat < heartbeatIntervalMs) {
+                return;
+            }
+            lastHeartbeat = now;
+            if (!jobService.heartbeat(job, embedded, total)) {
+                throw new CancellationException("Ingestion job " + job.getId() + " was cancelled or taken over");
+            }
+        }
+    }
+}
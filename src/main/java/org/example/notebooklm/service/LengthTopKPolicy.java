@@ -0,0 +1,31 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.RetrievedChunk;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The original heuristic: K grows with the length of the question.
+ */
+@Component
+public class LengthTopKPolicy implements TopKPolicy {
+
+    @Override
+    public String getName() {
+        return "length";
+    }
+
+    @Override
+    public List<RetrievedChunk> select(String question, List<RetrievedChunk> candidates) {
+        return candidates.subList(0, Math.min(candidates.size(), topKForLength(question.length())));
+    }
+
+    private static int topKForLength(int length) {
+        if (length < 50) return 3;
+        if (length < 150) return 5;
+        if (length < 300) return 8;
+
+        return 10;
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.exception.GeminiException;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.repository.PgVectorStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Search and question answering across many documents at once.
+ * Retrieval is one index-assisted query over the selected documents (or the whole
+ * library), with a per-document cap so a single long PDF cannot fill the whole context.
+ * With {@code vector.quantization} set, the query scans the quantized index and re-ranks
+ * exactly, like per-document search.
+ */
+@Service
+public class LibrarySearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LibrarySearchService.class);
+
+    private final PgVectorStore pgVectorStore;
+    private final EmbeddingService embeddingService;
+    private final GeminiAnswerService llmService;
+    private final VectorSearchTuner searchTuner;
+    private final TopKSelector topKSelector;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int candidateMultiplier;
+    private final int maxLimit;
+
+    public LibrarySearchService(PgVectorStore pgVectorStore,
+                                EmbeddingService embeddingService,
+                                GeminiAnswerService llmService,
+                                VectorSearchTuner searchTuner,
+                                TopKSelector topKSelector,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${retrieval.library.candidate-multiplier:4}") int candidateMultiplier,
+                                @Value("${retrieval.library.max-limit:50}") int maxLimit) {
+        this.pgVectorStore = pgVectorStore;
+        this.embeddingService = embeddingService;
+        this.llmService = llmService;
+        this.searchTuner = searchTuner;
+        this.topKSelector = topKSelector;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.candidateMultiplier = Math.max(1, candidateMultiplier);
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @param documentIds documents to search, or null for the whole library
+     */
+    public List<RetrievedChunk> search(Collection<Long> documentIds, String query,
+                                       int perDocumentLimit, int limit, SearchTuning tuning) {
+        float[] queryEmbedding = embeddingService.generateQueryEmbedding(query);
+        if (queryEmbedding == null || queryEmbedding.length == 0) {
+            throw new RuntimeException("Could not generate embedding for question");
+        }
+        return search(documentIds, queryEmbedding, perDocumentLimit, limit, tuning);
+    }
+
+    /**
+     * Runs the search in a read-only transaction so the index settings apply to it alone.
+     */
+    public List<RetrievedChunk> search(Collection<Long> documentIds, float[] queryEmbedding,
+                                       int perDocumentLimit, int limit, SearchTuning tuning) {
+        if (limit < 1 || limit > maxLimit || perDocumentLimit < 1) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit
+                    + " and perDocumentLimit must be positive");
+        }
+        if (documentIds != null && documentIds.isEmpty()) {
+            return List.of();
+        }
+
+        // ה-pool גדול מה-limit כדי שיישארו מספיק צ'אנקים אחרי ההגבלה לכל מסמך;
+        // ef_search חייב להיות לפחות בגודל הסריקה (pool מוגדל כשיש דחיסה) אחרת ה-HNSW יחזיר פחות תוצאות
+        int candidatePool = limit * candidateMultiplier;
+        SearchTuning poolTuning = tuning.withMinEfSearch(pgVectorStore.candidatePool(candidatePool));
+
+        long start = System.nanoTime();
+        List<RetrievedChunk> hits = readOnlyTransaction.execute(status -> {
+            searchTuner.apply(poolTuning);
+            return pgVectorStore.searchLibrary(documentIds, queryEmbedding, candidatePool, perDocumentLimit, limit);
+        });
+        logger.info("Library search over {} returned {} chunks from {} documents in {} ms",
+                documentIds == null ? "all documents" : documentIds.size() + " documents",
+                hits.size(), hits.stream().map(RetrievedChunk::getDocumentId).distinct().count(),
+                (System.nanoTime() - start) / 1_000_000);
+        return hits;
+    }
+
+    /**
+     * Answers a question from the given documents. The context labels every chunk with its
+     * source, and the sources are returned alongside the answer.
+     */
+    public Map<String, Object> ask(Collection<Long> documentIds, String question,
+                                   int perDocumentLimit, int limit, SearchTuning tuning) {
+        List<RetrievedChunk> chunks = topKSelector.trimToBudget(
+                search(documentIds, question, perDocumentLimit, limit, tuning));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        if (chunks.isEmpty()) {
+            response.put("answer", "No relevant information found in the selected documents.");
+            response.put("sources", List.of());
+            return response;
+        }
+
+        String context = chunks.stream()
+                .map(c -> "[Source: " + c.getDocumentName() + ", chunk " + c.getChunkIndex() + "]\n" + c.getText())
+                .collect(Collectors.joining("\n---\n"));
+        String answer;
+        try {
+            answer = llmService.generateAnswer(question, context);
+        } catch (GeminiException e) {
+            answer = e.getMessage();
+        }
+
+        response.put("answer", answer);
+        response.put("sources", toSources(chunks));
+        return response;
+    }
+
+    public static List<Map<String, Object>> toSources(List<RetrievedChunk> chunks) {
+        return chunks.stream().map(c -> {
+            Map<String, Object> source = new LinkedHashMap<>();
+            source.put("documentId", c.getDocumentId());
+            source.put("fileName", c.getDocumentName());
+            source.put("chunkId", c.getId());
+            source.put("chunkIndex", c.getChunkIndex());
+            source.put("distance", c.getDistance());
+            source.put("text", c.getText());
+            return source;
+        }).toList();
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.util.TokenEstimator;
+import org.example.notebooklm.util.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maximal marginal relevance re-ranking of retrieved chunks.
+ * Each step takes the candidate with the best
+ * {@code lambda * relevance - (1 - lambda) * max similarity to the chunks already taken},
+ * where relevance is {@code 1 - distance} to the question (or, for a fused ranking, a
+ * value that falls with rank) and similarity is the cosine between chunk embeddings. Candidates at least {@code retrieval.mmr.duplicate-similarity}
+ * similar to a taken chunk are dropped as near-duplicates, and a candidate that would
+ * exceed the context token budget is passed over for a smaller one.
+ */
+@Component
+public class MmrReranker {
+
+    private static final Logger logger = LoggerFactory.getLogger(MmrReranker.class);
+
+    private final boolean enabled;
+    private final double lambda;
+    private final double duplicateSimilarity;
+
+    private final AtomicLong reranks = new AtomicLong();
+    private final AtomicLong duplicatesDropped = new AtomicLong();
+    private final AtomicLong relevanceOrderTokens = new AtomicLong();
+    private final AtomicLong selectedTokens = new AtomicLong();
+
+    public MmrReranker(@Value("${retrieval.mmr.enabled:true}") boolean enabled,
+                       @Value("${retrieval.mmr.lambda:0.7}") double lambda,
+                       @Value("${retrieval.mmr.duplicate-similarity:0.92}") double duplicateSimilarity) {
+        if (lambda < 0 || lambda > 1) {
+            throw new IllegalStateException("retrieval.mmr.lambda must be between 0 and 1: " + lambda);
+        }
+        this.enabled = enabled;
+        this.lambda = lambda;
+        this.duplicateSimilarity = duplicateSimilarity;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param candidates over-fetched chunks, best first
+     * @param embeddings embeddings of the candidates by chunk id; a chunk without one is
+     *                   treated as unrelated to all others
+     * @param k          maximum number of chunks to return
+     * @param maxTokens  context token budget; the first chunk is always taken
+     * @return up to {@code k} chunks in selection order
+     */
+    public List<RetrievedChunk> rerank(List<RetrievedChunk> candidates, Map<Long, float[]> embeddings,
+                                       int k, int maxTokens) {
+        float[] relevance = new float[candidates.size()];
+        for (int i = 0; i < relevance.length; i++) {
+            relevance[i] = (float) (1.0 - candidates.get(i).getDistance());
+        }
+        return rerank(candidates, relevance, embeddings, k, maxTokens);
+    }
+
+    /**
+     * Like {@link #rerank(List, Map, int, int)} for candidates whose order comes from another
+     * ranking (e.g. reciprocal rank fusion), where the distance does not reflect how relevant a
+     * chunk is: relevance falls linearly from 1 for the first candidate to 0 past the last.
+     */
+    public List<RetrievedChunk> rerankByRank(List<RetrievedChunk> candidates, Map<Long, float[]> embeddings,
+                                             int k, int maxTokens) {
+        int n = candidates.size();
+        float[] relevance = new float[n];
+        for (int i = 0; i < n; i++) {
+            relevance[i] = 1f - (float) i / n;
+        }
+        return rerank(candidates, relevance, embeddings, k, maxTokens);
+    }
+
+    private List<RetrievedChunk> rerank(List<RetrievedChunk> candidates, float[] relevance,
+                                        Map<Long, float[]> embeddings, int k, int maxTokens) {
+        int n = candidates.size();
+        if (n == 0 || k <= 0) {
+            return List.of();
+        }
+
+        // מטריצה רציפה של וקטורים מנורמלים + מערכים פרימיטיביים לכל מועמד
+        int dimensions = embeddings.values().stream().findFirst().map(v -> v.length).orElse(0);
+        float[] matrix = new float[n * dimensions];
+        boolean[] hasEmbedding = new boolean[n];
+        float[] maxSimilarity = new float[n];
+        int[] tokens = new int[n];
+        for (int i = 0; i < n; i++) {
+            RetrievedChunk chunk = candidates.get(i);
+            float[] embedding = embeddings.get(chunk.getId());
+            if (embedding != null && embedding.length == dimensions) {
+                System.arraycopy(VectorMath.normalize(embedding), 0, matrix, i * dimensions, dimensions);
+                hasEmbedding[i] = true;
+            }
+            tokens[i] = TokenEstimator.estimate(chunk.getText());
+        }
+
+        boolean[] done = new boolean[n];
+        float[] row = new float[dimensions];
+        List<RetrievedChunk> selected = new ArrayList<>(Math.min(k, n));
+        int usedTokens = 0;
+        int duplicates = 0;
+        while (selected.size() < k) {
+            int best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (done[i]) {
+                    continue;
+                }
+                if (maxSimilarity[i] >= duplicateSimilarity) {
+                    done[i] = true;
+                    duplicates++;
+                    continue;
+                }
+                if (!selected.isEmpty() && usedTokens + tokens[i] > maxTokens) {
+                    continue;
+                }
+                float score = (float) (lambda * relevance[i] - (1 - lambda) * maxSimilarity[i]);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+
+            done[best] = true;
+            selected.add(candidates.get(best));
+            usedTokens += tokens[best];
+            if (!hasEmbedding[best]) {
+                continue;
+            }
+            System.arraycopy(matrix, best * dimensions, row, 0, dimensions);
+            for (int i = 0; i < n; i++) {
+                if (!done[i] && hasEmbedding[i]) {
+                    float similarity = VectorMath.dotRow(row, matrix, i * dimensions);
+                    if (similarity > maxSimilarity[i]) {
+                        maxSimilarity[i] = similarity;
+                    }
+                }
+            }
+        }
+
+        int baselineTokens = relevanceOrderTokens(tokens, k, maxTokens);
+        reranks.incrementAndGet();
+        duplicatesDropped.addAndGet(duplicates);
+        relevanceOrderTokens.addAndGet(baselineTokens);
+        selectedTokens.addAndGet(usedTokens);
+        logger.info("MMR picked {} of {} candidates (~{} tokens; relevance order would use ~{}), " +
+                "{} near-duplicates dropped", selected.size(), n, usedTokens, baselineTokens, duplicates);
+        return selected;
+    }
+
+    public Map<String, Object> getStats() {
+        long count = reranks.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("lambda", lambda);
+        stats.put("duplicateSimilarity", duplicateSimilarity);
+        stats.put("reranks", count);
+        stats.put("duplicatesDropped", duplicatesDropped.get());
+        stats.put("avgTokens", count == 0 ? 0.0 : (double) selectedTokens.get() / count);
+        stats.put("avgRelevanceOrderTokens", count == 0 ? 0.0 : (double) relevanceOrderTokens.get() / count);
+        return stats;
+    }
+
+    /**
+     * Tokens of the first {@code k} candidates cut to the budget, i.e. without re-ranking.
+     */
+    private static int relevanceOrderTokens(int[] tokens, int k, int maxTokens) {
+        int used = 0;
+        for (int i = 0; i < Math.min(k, tokens.length); i++) {
+            if (i > 0 && used + tokens[i] > maxTokens) {
+                break;
+            }
+            used += tokens[i];
+        }
+        return used;
+    }
+}
@@ -1,43 +1,87 @@
 package org.example.notebooklm.service;
 
+import org.example.notebooklm.exception.DocumentNotReadyException;
+import org.example.notebooklm.exception.GeminiException;
+import org.example.notebooklm.exception.ResourceNotFoundException;
+import org.example.notebooklm.model.DocumentStatus;
 import org.example.notebooklm.model.PdfChunk;
 import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.repository.HnswVectorStore;
+import org.example.notebooklm.repository.InMemoryVectorStore;
+import org.example.notebooklm.repository.PdfChunkBulkWriter;
 import org.example.notebooklm.repository.PdfChunkRepository;
 import org.example.notebooklm.repository.PdfDocumentRepository;
+import org.example.notebooklm.repository.PdfSectionRepository;
+import org.example.notebooklm.util.ContentHash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 @Service
 public class PdfService {
 
     private static final Logger logger = LoggerFactory.getLogger(PdfService.class);
+    private static final String NO_RELEVANT_INFORMATION = "No relevant information found in the document.";
 
     private final PdfDocumentRepository documentRepository;
     private final PdfChunkRepository chunkRepository;
+    private final PdfChunkBulkWriter chunkWriter;
+    private final PdfSectionRepository sectionRepository;
     private final EmbeddingService embeddingService;
     private final ChunkingService chunkingService;
+    private final SectionService sectionService;
     private final GeminiAnswerService llmService;
-    private final TopKSelector topKSelector;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final AnswerCache answerCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final RetrievalService retrievalService;
+    private final VectorSearchTuner searchTuner;
+    private final InMemoryVectorStore memoryVectorStore;
+    private final HnswVectorStore hnswVectorStore;
 
     public PdfService(PdfDocumentRepository documentRepository,
                       PdfChunkRepository chunkRepository,
+                      PdfChunkBulkWriter chunkWriter,
+                      PdfSectionRepository sectionRepository,
                       EmbeddingService embeddingService,
                       ChunkingService chunkingService,
+                      SectionService sectionService,
                       GeminiAnswerService llmService,
-                      TopKSelector topKSelector) {
+                      EmbeddingPipeline embeddingPipeline,
+                      AnswerCache answerCache,
+                      SemanticAnswerCache semanticAnswerCache,
+                      RetrievalService retrievalService,
+                      VectorSearchTuner searchTuner,
+                      InMemoryVectorStore memoryVectorStore,
+                      HnswVectorStore hnswVectorStore) {
         this.documentRepository = documentRepository;
         this.chunkRepository = chunkRepository;
+        this.chunkWriter = chunkWriter;
+        this.sectionRepository = sectionRepository;
         this.embeddingService = embeddingService;
         this.chunkingService = chunkingService;
+        this.sectionService = sectionService;
         this.llmService = llmService;
-        this.topKSelector = topKSelector;
+        this.embeddingPipeline = embeddingPipeline;
+        this.answerCache = answerCache;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.retrievalService = retrievalService;
+        this.searchTuner = searchTuner;
+        this.memoryVectorStore = memoryVectorStore;
+        this.hnswVectorStore = hnswVectorStore;
     }
 
     public PdfDocument saveDocument(PdfDocument document) {
@@ -48,11 +92,37 @@ public class PdfService {
         return documentRepository.findAll();
     }
 
+    /**
+     * @throws ResourceNotFoundException if the document does not exist
+     * @throws DocumentNotReadyException if the document is still being ingested or failed
+     */
+    public void requireReady(Long pdfId) {
+        DocumentStatus status = documentRepository.findStatusById(pdfId);
+        // null גם עבור מסמך שלא קיים; רק שורה קיימת בלי סטטוס נחשבת מוכנה
+        if (status == null && !documentRepository.existsById(pdfId)) {
+            throw new ResourceNotFoundException("PDF", pdfId);
+        }
+        if (!DocumentStatus.isReady(status)) {
+            throw new DocumentNotReadyException(pdfId, status);
+        }
+    }
+
     @Transactional
     public boolean deletePdf(Long pdfId) {
         return documentRepository.findById(pdfId).map(doc -> {
             logger.info("Deleting PDF {} and its chunks", pdfId);
+            sectionRepository.deleteByPdfDocumentId(pdfId);
             documentRepository.delete(doc);
+            // אחרי commit: טעינה שמתחילה לפני כן עדיין רואה את השורות ותתקין אותן מחדש
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    answerCache.invalidateDocument(pdfId);
+                    semanticAnswerCache.invalidateDocument(pdfId);
+                    memoryVectorStore.invalidate(pdfId);
+                    hnswVectorStore.invalidate(pdfId);
+                }
+            });
             return true;
         }).orElse(false);
     }
@@ -60,38 +130,117 @@ public class PdfService {
     @Transactional
     public void resetAll() {
         logger.warn("Resetting ALL documents and chunks");
+        sectionRepository.deleteAllInBatch();
         chunkRepository.deleteAll();
         documentRepository.deleteAll();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                answerCache.invalidateAll();
+                semanticAnswerCache.invalidateAll();
+                memoryVectorStore.invalidateAll();
+                hnswVectorStore.invalidateAll();
+            }
+        });
     }
 
     @Transactional
     public void processPdf(PdfDocument document, String fullText) {
+        processPdf(document, fullText, IngestionProgress.NONE);
+    }
+
+    @Transactional
+    public void processPdf(PdfDocument document, String fullText, IngestionProgress progress) {
+        processPdf(document, List.of(fullText).iterator(), progress);
+    }
+
+    /**
+     * Chunks, embeds and stores the document, then marks it READY in the same transaction,
+     * so a document is never searchable with only part of its chunks.
+     * Pages are pulled as chunking needs them, so embedding starts while later pages are
+     * still being extracted; the progress total grows until the last page is read.
+     */
+    @Transactional
+    public void processPdf(PdfDocument document, Iterator<String> pages, IngestionProgress progress) {
         if (document == null || document.getId() == null) {
             throw new IllegalArgumentException("PdfDocument must be persisted before processing");
         }
 
         logger.info("Processing PDF id {} using Gemini Embeddings...", document.getId());
 
-        List<String> chunks = chunkingService.chunk(fullText);
-        logger.info("PDF id {} split into {} chunks", document.getId(), chunks.size());
+        Iterator<String> source = chunkingService.chunk(pages);
+        int[] produced = {0};
+        Iterator<String> chunks = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
 
-        int index = 0;
-        for (String chunkText : chunks) {
-            float[] embedding = embeddingService.generateEmbedding(chunkText);
+            @Override
+            public String next() {
+                produced[0]++;
+                return source.next();
+            }
+        };
 
-            if (embedding == null || embedding.length == 0) {
-                logger.error("Embedding generation failed for chunk {}", index);
-                continue;
+        // ה-pipeline מחזיר תוצאות לפי סדר הצ'אנקים, על ה-thread הנוכחי (בתוך הטרנזקציה)
+        int[] position = {0};
+        int[] index = {0};
+        int[] failed = {0};
+        Map<Long, HnswVectorStore.IndexedEmbedding> stored = new LinkedHashMap<>();
+        // צ'אנקים נכתבים במנות דרך COPY, לא שורה-שורה דרך ה-persistence context
+        List<PdfChunk> pending = new ArrayList<>(chunkWriter.getBatchSize());
+        Consumer<List<PdfChunk>> flush = batch -> {
+            chunkWriter.write(batch);
+            for (PdfChunk chunk : batch) {
+                stored.put(chunk.getId(), new HnswVectorStore.IndexedEmbedding(chunk.getChunkIndex(), chunk.getEmbedding()));
+            }
+            batch.clear();
+        };
+        SectionService.Builder sections = sectionService.start(document);
+        embeddingPipeline.run(chunks, (chunkText, result) -> {
+            int current = position[0]++;
+            progress.update(position[0], produced[0]);
+            if (!result.isSuccess()) {
+                logger.error("Embedding generation failed for chunk {}: {}", current, result.getError());
+                failed[0]++;
+                return;
             }
 
             PdfChunk chunk = new PdfChunk();
             chunk.setText(chunkText);
-            chunk.setChunkIndex(index++);
+            chunk.setContentHash(ContentHash.of(chunkText));
+            chunk.setChunkIndex(index[0]++);
             chunk.setPdfDocument(document);
-            chunk.setEmbedding(embedding);
+            chunk.setEmbedding(result.getEmbedding());
+
+            pending.add(chunk);
+            if (pending.size() >= chunkWriter.getBatchSize()) {
+                flush.accept(pending);
+            }
+            sections.add(chunk.getChunkIndex(), chunkText, result.getEmbedding());
+        });
+        flush.accept(pending);
+        sections.finish();
+        logger.info("PDF id {} split into {} chunks", document.getId(), produced[0]);
 
-            chunkRepository.save(chunk);
+        if (failed[0] > 0) {
+            logger.warn("PDF {}: {} of {} chunks could not be embedded and were skipped",
+                    document.getId(), failed[0], produced[0]);
         }
+        // עדכון ישיר (לא save) - המסמך מנותק, ו-merge שלו היה דורס את רשימת הצ'אנקים
+        documentRepository.updateStatus(document.getId(), DocumentStatus.READY);
+        document.setStatus(DocumentStatus.READY);
+        // עותק ישן בזיכרון (אם יש) לא משקף את הצ'אנקים החדשים; ייטען מחדש בשאלה הבאה
+        memoryVectorStore.invalidate(document.getId());
+        // לגרף ה-HNSW מוסיפים רק אחרי commit, כדי שלא יכיל צ'אנקים שהתגלגלו אחורה
+        Long pdfId = document.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                hnswVectorStore.addChunks(pdfId, stored);
+            }
+        });
         logger.info("Finished processing PDF {}", document.getId());
     }
 
@@ -99,37 +248,131 @@ public class PdfService {
      * פונקציית ה-RAG המרכזית המותאמת ל-Gemini
      */
     public String askQuestion(Long pdfId, String question) {
+        return askQuestion(pdfId, question, searchTuner.defaultTuning());
+    }
+
+    /**
+     * @param tuning vector index settings (ef_search / probes) for the retrieval step
+     */
+    public String askQuestion(Long pdfId, String question, SearchTuning tuning) {
         logger.info("RAG Request for Gemini - PDF ID: {}, Question: {}", pdfId, question);
+        requireReady(pdfId);
+
+        float[] queryEmbedding = embedQuestion(question);
+        String similarAnswer = semanticAnswerCache.lookup(pdfId, queryEmbedding);
+        if (similarAnswer != null) {
+            return similarAnswer;
+        }
 
-        // 1. יצירת וקטור לשאלה (Retrieval Phase) - משתמש ב-GeminiEmbeddingService
-        float[] queryEmbedding = embeddingService.generateEmbedding(question);
+        List<RetrievedChunk> similarChunks = retrieveChunks(pdfId, question, queryEmbedding, tuning);
+        if (similarChunks.isEmpty()) {
+            return NO_RELEVANT_INFORMATION;
+        }
+
+        List<Long> chunkIds = chunkIds(similarChunks);
+        String cached = answerCache.get(pdfId, question, chunkIds);
+        if (cached != null) {
+            logger.info("Answer cache hit for PDF {}", pdfId);
+            return cached;
+        }
+
+        // 5. שליחה ל-Gemini לקבלת תשובה סופית (Generation Phase)
+        String answer;
+        try {
+            answer = llmService.generateAnswer(question, buildContext(similarChunks));
+        } catch (GeminiException e) {
+            // שגיאות לא נשמרות במטמון
+            return e.getMessage();
+        }
+        answerCache.put(pdfId, question, chunkIds, answer);
+        semanticAnswerCache.put(pdfId, question, queryEmbedding, answer);
+        return answer;
+    }
+
+    /**
+     * Same flow as {@link #askQuestion}, but the answer is delivered piece by piece
+     * through {@code onChunk} while Gemini is still generating it.
+     */
+    public void streamQuestion(Long pdfId, String question,
+                               Consumer<String> onChunk, BooleanSupplier cancelled) {
+        streamQuestion(pdfId, question, searchTuner.defaultTuning(), onChunk, cancelled);
+    }
+
+    public void streamQuestion(Long pdfId, String question, SearchTuning tuning,
+                               Consumer<String> onChunk, BooleanSupplier cancelled) {
+        logger.info("Streaming RAG Request - PDF ID: {}, Question: {}", pdfId, question);
+        requireReady(pdfId);
+        long start = System.nanoTime();
+
+        float[] queryEmbedding = embedQuestion(question);
+        String similarAnswer = semanticAnswerCache.lookup(pdfId, queryEmbedding);
+        if (similarAnswer != null) {
+            onChunk.accept(similarAnswer);
+            return;
+        }
+
+        List<RetrievedChunk> similarChunks = retrieveChunks(pdfId, question, queryEmbedding, tuning);
+        if (similarChunks.isEmpty()) {
+            onChunk.accept(NO_RELEVANT_INFORMATION);
+            return;
+        }
+
+        List<Long> chunkIds = chunkIds(similarChunks);
+        String cached = answerCache.get(pdfId, question, chunkIds);
+        if (cached != null) {
+            logger.info("Answer cache hit for PDF {}", pdfId);
+            onChunk.accept(cached);
+            return;
+        }
+
+        StringBuilder answer = new StringBuilder();
+        llmService.streamAnswer(question, buildContext(similarChunks), text -> {
+            if (answer.isEmpty()) {
+                logger.info("PDF {}: time to first token {} ms", pdfId, (System.nanoTime() - start) / 1_000_000);
+            }
+            answer.append(text);
+            onChunk.accept(text);
+        }, cancelled);
+
+        // תשובה שנקטעה באמצע לא נשמרת
+        if (!cancelled.getAsBoolean() && !answer.isEmpty()) {
+            answerCache.put(pdfId, question, chunkIds, answer.toString());
+            semanticAnswerCache.put(pdfId, question, queryEmbedding, answer.toString());
+        }
+
+        logger.info("PDF {}: streamed answer finished after {} ms (cancelled={})",
+                pdfId, (System.nanoTime() - start) / 1_000_000, cancelled.getAsBoolean());
+    }
+
+    // 1. יצירת וקטור לשאלה (Retrieval Phase) - משתמש ב-GeminiEmbeddingService
+    private float[] embedQuestion(String question) {
+        float[] queryEmbedding = embeddingService.generateQueryEmbedding(question);
         if (queryEmbedding == null || queryEmbedding.length == 0) {
             throw new RuntimeException("Could not generate embedding for question");
         }
+        return queryEmbedding;
+    }
 
-        // 2. המרה לפורמט וקטורי תקני עבור PostgreSQL/pgvector: [val1,val2,...]
-        // התיקון: שימוש ב-Locale.US ובנייה ידנית למניעת שגיאות Syntax ב-SQL
-        String vectorString = "[" +
-                IntStream.range(0, queryEmbedding.length)
-                        .mapToObj(i -> String.format(Locale.US, "%.8f", queryEmbedding[i]))
-                        .collect(Collectors.joining(",")) +
-                "]";
-
-        // 3. חיפוש הצ'אנקים הכי רלוונטיים ב-DB
-        int topK = topKSelector.selectTopK(question);
-        List<PdfChunk> similarChunks = chunkRepository.findSimilarChunks(pdfId, vectorString, topK);
+    private List<RetrievedChunk> retrieveChunks(Long pdfId, String question, float[] queryEmbedding, SearchTuning tuning) {
+        // 2-3. חיפוש הצ'אנקים הכי רלוונטיים ב-DB, עם הגדרות האינדקס של הבקשה;
+        // כמות הצ'אנקים נקבעת לפי התפלגות המרחקים ותקציב הטוקנים
+        List<RetrievedChunk> similarChunks = retrievalService.retrieve(pdfId, question, queryEmbedding, tuning);
 
         if (similarChunks == null || similarChunks.isEmpty()) {
             logger.warn("No similar chunks found for PDF ID {}", pdfId);
-            return "No relevant information found in the document.";
+            return List.of();
         }
+        return similarChunks;
+    }
 
-        // 4. איחוד הטקסטים שנמצאו ל-Context אחד (Augmentation Phase)
-        String context = similarChunks.stream()
-                .map(PdfChunk::getText)
-                .collect(Collectors.joining("\n---\n"));
+    private static List<Long> chunkIds(List<RetrievedChunk> chunks) {
+        return chunks.stream().map(RetrievedChunk::getId).toList();
+    }
 
-        // 5. שליחה ל-Gemini לקבלת תשובה סופית (Generation Phase)
-        return llmService.answer(question, context);
+    // 4. איחוד הטקסטים שנמצאו ל-Context אחד (Augmentation Phase)
+    private String buildContext(List<RetrievedChunk> chunks) {
+        return chunks.stream()
+                .map(RetrievedChunk::getText)
+                .collect(Collectors.joining("\n---\n"));
     }
-}
\ No newline at end of file
+}
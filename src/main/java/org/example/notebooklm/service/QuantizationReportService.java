@@ -0,0 +1,147 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.PgVectorCodec;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.model.VectorQuantization;
+import org.example.notebooklm.repository.PdfChunkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares quantized search with the full-precision baseline: storage footprint per
+ * representation and recall@k over sampled chunks used as queries.
+ * The baseline is an exact scan (index scans disabled for that transaction); each
+ * quantized mode runs the same two-stage query retrieval uses.
+ */
+@Service
+public class QuantizationReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuantizationReportService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PdfChunkRepository chunkRepository;
+    private final VectorIndexService vectorIndexService;
+    private final VectorSearchTuner searchTuner;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int rerankFactor;
+
+    public QuantizationReportService(JdbcTemplate jdbcTemplate,
+                                     PdfChunkRepository chunkRepository,
+                                     VectorIndexService vectorIndexService,
+                                     VectorSearchTuner searchTuner,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${vector.quantization.rerank-factor:4}") int rerankFactor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkRepository = chunkRepository;
+        this.vectorIndexService = vectorIndexService;
+        this.searchTuner = searchTuner;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rerankFactor = Math.max(1, rerankFactor);
+    }
+
+    public Map<String, Object> report(int samples, int k) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("footprint", footprint());
+        report.put("indexes", vectorIndexService.describeIndexes().get("indexes"));
+
+        List<float[]> queries = jdbcTemplate.query(
+                "SELECT CAST(embedding AS text) AS embedding FROM pdf_chunks " +
+                        "WHERE embedding IS NOT NULL ORDER BY random() LIMIT ?",
+                (rs, rowNum) -> PgVectorCodec.parse(rs.getString("embedding")), samples);
+        if (queries.isEmpty()) {
+            report.put("recall", "No chunks to sample");
+            return report;
+        }
+
+        List<Set<Long>> baseline = new ArrayList<>(queries.size());
+        long baselineNanos = 0;
+        for (float[] query : queries) {
+            long start = System.nanoTime();
+            baseline.add(ids(readOnlyTransaction.execute(status -> {
+                // סריקה מלאה ומדויקת - זה ה-ground truth
+                jdbcTemplate.queryForObject("SELECT set_config('enable_indexscan', 'off', true)", String.class);
+                return chunkRepository.searchQuantized(null, query, VectorQuantization.NONE, k, k);
+            })));
+            baselineNanos += System.nanoTime() - start;
+        }
+
+        Map<String, Object> recall = new LinkedHashMap<>();
+        recall.put("samples", queries.size());
+        recall.put("k", k);
+        recall.put("exactAvgMs", baselineNanos / 1_000_000.0 / queries.size());
+        for (VectorQuantization mode : List.of(VectorQuantization.NONE, VectorQuantization.HALFVEC, VectorQuantization.BINARY)) {
+            recall.put(mode.name().toLowerCase(Locale.ROOT), measure(mode, queries, baseline, k));
+        }
+        report.put("recall", recall);
+        return report;
+    }
+
+    private Map<String, Object> measure(VectorQuantization mode, List<float[]> queries,
+                                        List<Set<Long>> baseline, int k) {
+        SearchTuning tuning = searchTuner.defaultTuning();
+        int pool = mode == VectorQuantization.NONE ? k : k * rerankFactor;
+        SearchTuning poolTuning = tuning.withMinEfSearch(pool);
+
+        double recallSum = 0;
+        long nanos = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            float[] query = queries.get(i);
+            long start = System.nanoTime();
+            Set<Long> found = ids(readOnlyTransaction.execute(status -> {
+                searchTuner.apply(poolTuning);
+                return chunkRepository.searchQuantized(null, query, mode, pool, k);
+            }));
+            nanos += System.nanoTime() - start;
+
+            Set<Long> expected = baseline.get(i);
+            found.retainAll(expected);
+            recallSum += expected.isEmpty() ? 1.0 : (double) found.size() / expected.size();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("indexReady", mode == VectorQuantization.NONE || vectorIndexService.isQuantizedIndexReady(mode));
+        result.put("candidatePool", pool);
+        result.put("recallAtK", recallSum / queries.size());
+        result.put("avgMs", nanos / 1_000_000.0 / queries.size());
+        logger.info("Quantization report: {} recall@{} = {}", mode, k,
+                String.format(Locale.US, "%.3f", recallSum / queries.size()));
+        return result;
+    }
+
+    private Map<String, Object> footprint() {
+        Map<String, Object> footprint = new LinkedHashMap<>(jdbcTemplate.queryForMap(
+                "SELECT pg_size_pretty(pg_total_relation_size('pdf_chunks')) AS table_total, " +
+                        "pg_size_pretty(pg_relation_size('pdf_chunks')) AS table_heap, " +
+                        "count(*) AS sampled_rows, " +
+                        "avg(pg_column_size(s.embedding)) AS vector_bytes, " +
+                        "avg(pg_column_size(CAST(s.embedding AS halfvec(" + VectorQuantization.DIMENSIONS + ")))) AS halfvec_bytes, " +
+                        "avg(pg_column_size(CAST(binary_quantize(s.embedding) AS bit(" + VectorQuantization.DIMENSIONS + ")))) AS bit_bytes " +
+                        "FROM (SELECT embedding FROM pdf_chunks WHERE embedding IS NOT NULL LIMIT 1000) s"));
+        footprint.put("sharedBuffers", jdbcTemplate.queryForObject("SHOW shared_buffers", String.class));
+        return footprint;
+    }
+
+    private static Set<Long> ids(List<RetrievedChunk> chunks) {
+        Set<Long> ids = new HashSet<>();
+        if (chunks != null) {
+            for (RetrievedChunk chunk : chunks) {
+                ids.add(chunk.getId());
+            }
+        }
+        return ids;
+    }
+}
@@ -1,15 +1,14 @@
 package org.example.notebooklm.service;
 
-import org.example.notebooklm.model.PdfChunk;
+import org.example.notebooklm.exception.GeminiException;
+import org.example.notebooklm.model.RetrievedChunk;
 import org.example.notebooklm.repository.PdfChunkRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Locale;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 @Service
 public class RagService {
@@ -19,29 +18,35 @@ public class RagService {
     private final PdfChunkRepository chunkRepository;
     private final EmbeddingService embeddingService;
     private final GeminiAnswerService geminiAnswerService;
+    private final SemanticAnswerCache semanticAnswerCache;
 
     public RagService(PdfChunkRepository chunkRepository,
                       EmbeddingService embeddingService,
-                      GeminiAnswerService geminiAnswerService) {
+                      GeminiAnswerService geminiAnswerService,
+                      SemanticAnswerCache semanticAnswerCache) {
         this.chunkRepository = chunkRepository;
         this.embeddingService = embeddingService;
         this.geminiAnswerService = geminiAnswerService;
+        this.semanticAnswerCache = semanticAnswerCache;
     }
 
     public String askQuestion(Long pdfId, String question) {
         logger.info("Starting RAG process for PDF ID: {} with question: {}", pdfId, question);
 
         // 1. יצירת Embedding לשאלה
-        float[] queryEmbedding = embeddingService.generateEmbedding(question);
+        float[] queryEmbedding = embeddingService.generateQueryEmbedding(question);
         if (queryEmbedding == null || queryEmbedding.length == 0) {
             throw new RuntimeException("Failed to generate embedding for question");
         }
 
-        // 2. המרה לפורמט וקטורי עבור PostgreSQL ללא רווחים וללא שגיאות פורמט
-        String vectorString = formatVectorForPostgres(queryEmbedding);
+        // שאלה דומה מספיק כבר נענתה - מדלגים על החיפוש ועל Gemini
+        String similarAnswer = semanticAnswerCache.lookup(pdfId, queryEmbedding);
+        if (similarAnswer != null) {
+            return similarAnswer;
+        }
 
-        // 3. חיפוש 5 הצ'אנקים הכי דומים בבסיס הנתונים
-        List<PdfChunk> similarChunks = chunkRepository.findSimilarChunks(pdfId, vectorString, 5);
+        // 2-3. חיפוש 5 הצ'אנקים הכי דומים בבסיס הנתונים
+        List<RetrievedChunk> similarChunks = chunkRepository.searchSimilar(pdfId, queryEmbedding, 5);
 
         if (similarChunks == null || similarChunks.isEmpty()) {
             return "I couldn't find any relevant information in the uploaded document.";
@@ -49,22 +54,18 @@ public class RagService {
 
         // 4. איחוד הטקסטים שנמצאו ל-Context אחד
         String context = similarChunks.stream()
-                .map(PdfChunk::getText)
+                .map(RetrievedChunk::getText)
                 .collect(Collectors.joining("\n---\n"));
 
         // 5. שליחה ל-Gemini - תיקון השגיאה כאן!
         // אנחנו שולחים רק (question, context) כפי שנדרש ב-GeminiAnswerService
-        return geminiAnswerService.answer(question, context);
-    }
-
-    /**
-     * Efficiently formats a float array as a pgvector string.
-     */
-    private String formatVectorForPostgres(float[] embedding) {
-        return "[" +
-                IntStream.range(0, embedding.length)
-                        .mapToObj(i -> String.format(Locale.US, "%.10f", embedding[i]))
-                        .collect(Collectors.joining(",")) +
-                "]";
+        String answer;
+        try {
+            answer = geminiAnswerService.generateAnswer(question, context);
+        } catch (GeminiException e) {
+            return e.getMessage();
+        }
+        semanticAnswerCache.put(pdfId, question, queryEmbedding, answer);
+        return answer;
     }
-}
\ No newline at end of file
+}
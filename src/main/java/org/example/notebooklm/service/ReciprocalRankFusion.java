@@ -0,0 +1,45 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.RetrievedChunk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted reciprocal rank fusion: each ranked list contributes
+ * {@code weight / (k + rank)} to a chunk's score (rank starting at 1), and chunks are
+ * returned by descending total score. Only ranks are used, so vector distances and
+ * full-text ranks never need to be put on a common scale.
+ */
+final class ReciprocalRankFusion {
+
+    private ReciprocalRankFusion() {
+    }
+
+    static List<RetrievedChunk> fuse(List<RetrievedChunk> vectorHits, double vectorWeight,
+                                     List<RetrievedChunk> lexicalHits, double lexicalWeight,
+                                     int k) {
+        Map<Long, RetrievedChunk> chunks = new LinkedHashMap<>();
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        accumulate(vectorHits, vectorWeight, k, chunks, scores);
+        accumulate(lexicalHits, lexicalWeight, k, chunks, scores);
+
+        List<RetrievedChunk> fused = new ArrayList<>(chunks.values());
+        // בשוויון ניקוד - המרחק הווקטורי מכריע
+        fused.sort(Comparator.comparingDouble((RetrievedChunk c) -> -scores.get(c.getId()))
+                .thenComparingDouble(RetrievedChunk::getDistance));
+        return fused;
+    }
+
+    private static void accumulate(List<RetrievedChunk> hits, double weight, int k,
+                                   Map<Long, RetrievedChunk> chunks, Map<Long, Double> scores) {
+        for (int rank = 0; rank < hits.size(); rank++) {
+            RetrievedChunk chunk = hits.get(rank);
+            chunks.putIfAbsent(chunk.getId(), chunk);
+            scores.merge(chunk.getId(), weight / (k + rank + 1), Double::sum);
+        }
+    }
+}
@@ -1,89 +1,345 @@
 package org.example.notebooklm.service;
 
 import org.example.notebooklm.log.RetrievalLogger;
-import org.example.notebooklm.model.PdfChunk;
+import org.example.notebooklm.model.RetrievedChunk;
 import org.example.notebooklm.repository.PdfChunkRepository;
+import org.example.notebooklm.repository.PgVectorStore;
+import org.example.notebooklm.repository.VectorStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * Retrieval for a single document. Every public search runs in a read-only
+ * transaction, so the index settings applied with SET LOCAL cover exactly that search.
+ * In hybrid mode ({@code retrieval.mode=hybrid}) a full-text leg runs next to the vector
+ * leg, each on its own connection, and the two rankings are merged with reciprocal rank fusion.
+ * The vector leg is answered by the engine named in {@code retrieval.engine} (memory, hnsw
+ * or pgvector); the in-process engines need no connection, and whenever they cannot answer
+ * for a document yet the query goes to pgvector. With {@code retrieval.mmr.enabled} the
+ * prompt chunks are chosen from the candidates by {@link MmrReranker} to avoid near-duplicates.
+ * Hierarchical mode first picks the sections nearest to the question (by centroid, see
+ * {@link SectionService}) and searches chunks only inside them; documents without sections
+ * are searched flat.
+ */
 @Service
+@Transactional(readOnly = true)
 public class RetrievalService {
 
     private static final Logger logger = LoggerFactory.getLogger(RetrievalService.class);
     private static final int DEFAULT_TOP_K = 5;
 
     private final PdfChunkRepository chunkRepository;
+    private final PgVectorStore pgVectorStore;
+    private final VectorStore engine;
     private final SimilarityFilter similarityFilter;
     private final RetrievalLogger retrievalLogger;
+    private final VectorSearchTuner searchTuner;
+    private final TopKSelector topKSelector;
+    private final MmrReranker mmrReranker;
+    private final AsyncTaskExecutor retrievalExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final String mode;
+    private final boolean hybrid;
+    private final boolean hierarchical;
+    private final int hierarchicalSections;
+    private final double vectorWeight;
+    private final double lexicalWeight;
+    private final int rrfK;
+    private final int hybridTopK;
+
+    private final AtomicLong hybridQueries = new AtomicLong();
+    private final AtomicLong vectorLegMillis = new AtomicLong();
+    private final AtomicLong lexicalLegMillis = new AtomicLong();
+    private final AtomicLong lexicalFailures = new AtomicLong();
+    private final AtomicLong hierarchicalQueries = new AtomicLong();
+    private final AtomicLong hierarchicalFallbacks = new AtomicLong();
 
     public RetrievalService(PdfChunkRepository chunkRepository,
+                            PgVectorStore pgVectorStore,
+                            List<VectorStore> vectorStores,
                             SimilarityFilter similarityFilter,
-                            RetrievalLogger retrievalLogger) {
+                            RetrievalLogger retrievalLogger,
+                            VectorSearchTuner searchTuner,
+                            TopKSelector topKSelector,
+                            MmrReranker mmrReranker,
+                            @Qualifier("retrievalExecutor") AsyncTaskExecutor retrievalExecutor,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${retrieval.mode:vector}") String mode,
+                            @Value("${retrieval.hybrid.vector-weight:1.0}") double vectorWeight,
+                            @Value("${retrieval.hybrid.lexical-weight:1.0}") double lexicalWeight,
+                            @Value("${retrieval.hybrid.rrf-k:60}") int rrfK,
+                            @Value("${retrieval.hybrid.top-k:8}") int hybridTopK,
+                            @Value("${retrieval.engine:memory}") String engine,
+                            @Value("${retrieval.hierarchical.sections:4}") int hierarchicalSections) {
         this.chunkRepository = chunkRepository;
+        this.pgVectorStore = pgVectorStore;
+        this.engine = vectorStores.stream()
+                .filter(store -> store.getName().equalsIgnoreCase(engine))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown retrieval.engine: " + engine));
         this.similarityFilter = similarityFilter;
         this.retrievalLogger = retrievalLogger;
+        this.searchTuner = searchTuner;
+        this.topKSelector = topKSelector;
+        this.mmrReranker = mmrReranker;
+        this.retrievalExecutor = retrievalExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.mode = mode.toLowerCase(Locale.ROOT);
+        if (!List.of("vector", "hybrid", "hierarchical").contains(this.mode)) {
+            throw new IllegalStateException("Unknown retrieval.mode: " + mode + " (expected vector, hybrid or hierarchical)");
+        }
+        this.hybrid = "hybrid".equals(this.mode);
+        this.hierarchical = "hierarchical".equals(this.mode);
+        this.hierarchicalSections = Math.max(1, hierarchicalSections);
+        this.vectorWeight = vectorWeight;
+        this.lexicalWeight = lexicalWeight;
+        this.rrfK = rrfK;
+        this.hybridTopK = hybridTopK;
+    }
+
+    /**
+     * Retrieval for answering a question, in the configured mode.
+     * Vector mode over-fetches candidates once, filters them by distance and lets the
+     * configured top-K policy choose how many go into the prompt; hierarchical mode does the
+     * same with candidates taken from the best sections. Hybrid mode fuses the vector and
+     * full-text rankings instead.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<RetrievedChunk> retrieve(Long pdfId, String question, float[] queryEmbedding, SearchTuning tuning) {
+        if (hybrid) {
+            return retrieveHybrid(pdfId, question, queryEmbedding, tuning);
+        }
+        List<RetrievedChunk> candidates = search(pdfId, queryEmbedding, topKSelector.candidateCount(), tuning);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        if (mmrReranker.isEnabled()) {
+            int k = topKSelector.chooseK(question, candidates);
+            return mmrReranker.rerank(candidates, candidateEmbeddings(pdfId, candidates), k,
+                    topKSelector.maxContextTokens());
+        }
+        return topKSelector.select(question, candidates);
+    }
+
+    /**
+     * Hybrid retrieval: the vector and full-text queries run concurrently, each in its own
+     * read-only transaction, and are merged with weighted reciprocal rank fusion.
+     * If the full-text leg fails (e.g. its column is still being built) the vector
+     * ranking is used alone.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<RetrievedChunk> retrieveHybrid(Long pdfId, String question, float[] queryEmbedding, SearchTuning tuning) {
+        if (queryEmbedding == null || queryEmbedding.length == 0) {
+            logger.warn("Query embedding is null or empty");
+            return List.of();
+        }
+        int candidates = topKSelector.candidateCount();
+        long start = System.nanoTime();
+
+        // מנוע בתוך התהליך - אין צורך בחיבור ולא בת'רד נוסף לרגל הווקטורית
+        TimedHits inMemory = timed(() -> inProcessSearch(pdfId, queryEmbedding, candidates));
+        CompletableFuture<TimedHits> vectorLeg = inMemory.hits != null
+                ? CompletableFuture.completedFuture(inMemory)
+                : CompletableFuture.supplyAsync(() -> timed(() -> pgSearch(pdfId, queryEmbedding, candidates, tuning)),
+                retrievalExecutor);
+        CompletableFuture<TimedHits> lexicalLeg = CompletableFuture.supplyAsync(() -> {
+            try {
+                return timed(() -> readOnlyTransaction.execute(status ->
+                        chunkRepository.searchLexical(pdfId, question, queryEmbedding, candidates)));
+            } catch (RuntimeException e) {
+                lexicalFailures.incrementAndGet();
+                logger.warn("Full-text leg failed for PDF {}, using vector results only: {}", pdfId, e.getMessage());
+                return new TimedHits(List.of(), 0);
+            }
+        }, retrievalExecutor);
+
+        TimedHits vectorHits;
+        TimedHits lexicalHits;
+        try {
+            vectorHits = vectorLeg.join();
+            lexicalHits = lexicalLeg.join();
+        } catch (CompletionException e) {
+            lexicalLeg.cancel(true);
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+
+        List<RetrievedChunk> fused = ReciprocalRankFusion.fuse(
+                vectorHits.hits, vectorWeight, lexicalHits.hits, lexicalWeight, rrfK);
+        // הרלוונטיות ל-MMR לפי הדירוג המאוחד - המרחק הווקטורי היה מבטל את תרומת החיפוש המילולי
+        List<RetrievedChunk> selected = mmrReranker.isEnabled()
+                ? mmrReranker.rerankByRank(fused, candidateEmbeddings(pdfId, fused), hybridTopK, topKSelector.maxContextTokens())
+                : topKSelector.trimToBudget(fused.subList(0, Math.min(hybridTopK, fused.size())));
+
+        hybridQueries.incrementAndGet();
+        vectorLegMillis.addAndGet(vectorHits.millis);
+        lexicalLegMillis.addAndGet(lexicalHits.millis);
+        logger.info("Hybrid retrieval for PDF {}: vector {} hits in {} ms, full-text {} hits in {} ms, " +
+                        "{} fused, {} selected, {} ms total",
+                pdfId, vectorHits.hits.size(), vectorHits.millis, lexicalHits.hits.size(), lexicalHits.millis,
+                fused.size(), selected.size(), (System.nanoTime() - start) / 1_000_000);
+        retrievalLogger.logFilteredResults(selected);
+        return selected;
+    }
+
+    /**
+     * Finds similar chunks using a float[] embedding and the default search profile.
+     */
+    public List<RetrievedChunk> findSimilarChunks(Long pdfId, float[] queryEmbedding, int topK) {
+        return findSimilarChunks(pdfId, queryEmbedding, topK, searchTuner.defaultTuning());
+    }
+
+    /**
+     * Finds similar chunks with explicit index settings.
+     */
+    public List<RetrievedChunk> findSimilarChunks(Long pdfId, float[] queryEmbedding, int topK, SearchTuning tuning) {
+        return search(pdfId, queryEmbedding, topK, tuning);
     }
 
     /**
-     * Finds similar chunks using a float[] embedding.
+     * Overloaded method with default Top K.
      */
-    public List<PdfChunk> findSimilarChunks(Long pdfId, float[] queryEmbedding, int topK) {
+    public List<RetrievedChunk> findSimilarChunks(Long pdfId, float[] queryEmbedding) {
+        return findSimilarChunks(pdfId, queryEmbedding, DEFAULT_TOP_K);
+    }
+
+    /**
+     * Hybrid query count and average time per leg since startup.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> getHybridStats() {
+        long queries = hybridQueries.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode);
+        stats.put("engine", engine.getName());
+        stats.put("quantization", pgVectorStore.getQuantization().name().toLowerCase(Locale.ROOT));
+        stats.put("vectorWeight", vectorWeight);
+        stats.put("lexicalWeight", lexicalWeight);
+        stats.put("hybridQueries", queries);
+        stats.put("avgVectorLegMs", queries == 0 ? 0.0 : (double) vectorLegMillis.get() / queries);
+        stats.put("avgLexicalLegMs", queries == 0 ? 0.0 : (double) lexicalLegMillis.get() / queries);
+        stats.put("lexicalFailures", lexicalFailures.get());
+        stats.put("hierarchicalQueries", hierarchicalQueries.get());
+        stats.put("hierarchicalFallbacks", hierarchicalFallbacks.get());
+        stats.put("mmr", mmrReranker.getStats());
+        return stats;
+    }
+
+    private List<RetrievedChunk> search(Long pdfId, float[] queryEmbedding, int topK, SearchTuning tuning) {
 
         if (queryEmbedding == null || queryEmbedding.length == 0) {
             logger.warn("Query embedding is null or empty");
             return List.of();
         }
 
-        // המרה לפורמט ש-pgvector מבין: [0.1, 0.2, ...]
-        String queryVector = formatVectorForPostgres(queryEmbedding);
-        logger.debug("Searching for top {} similar chunks in document {}", topK, pdfId);
+        logger.debug("Searching for top {} similar chunks in document {} ({})", topK, pdfId, tuning);
 
-        // 1️⃣ שליפה מה‑DB בלבד
-        List<PdfChunk> rawResults = chunkRepository.findSimilarChunks(pdfId, queryVector, topK);
+        // 1️⃣ מהסעיפים הטובים (במצב היררכי), מהמנוע שבתוך התהליך, או מה-DB - מזהה, טקסט ומרחק בלבד
+        List<RetrievedChunk> rawResults = hierarchical ? sectionSearch(pdfId, queryEmbedding, topK) : null;
+        if (rawResults == null) {
+            rawResults = inProcessSearch(pdfId, queryEmbedding, topK);
+        }
+        if (rawResults == null) {
+            rawResults = pgSearch(pdfId, queryEmbedding, topK, tuning);
+        }
         retrievalLogger.logRawResults(rawResults);
 
         if (rawResults.isEmpty()) {
             return List.of();
         }
 
-        // 2️⃣ אין distances בשלב זה — מעבירים null לסינון הדינמי
-        List<PdfChunk> filtered = similarityFilter.filterByDynamicThreshold(rawResults, null);
+        // 2️⃣ סינון דינמי לפי המרחקים שחזרו מה-DB
+        List<RetrievedChunk> filtered = similarityFilter.filterByDynamicThreshold(rawResults);
 
-        // 3️⃣ לוגים אחרי סינון
+        // 3️⃣ לוגים אחרי סינון (מה שנמחק מדווח מתוך הפילטר עם הסיבה)
         retrievalLogger.logFilteredResults(filtered);
 
-        // 4️⃣ לוגים של מה שנמחק
-        List<PdfChunk> removed = rawResults.stream()
-                .filter(c -> !filtered.contains(c))
-                .toList();
+        return filtered;
+    }
 
-        retrievalLogger.logRemovedChunks(removed);
+    /**
+     * Chunks of the {@code retrieval.hierarchical.sections} best sections; null when the
+     * document has no sections yet, so the caller searches all of its chunks.
+     */
+    private List<RetrievedChunk> sectionSearch(Long pdfId, float[] queryEmbedding, int limit) {
+        hierarchicalQueries.incrementAndGet();
+        List<RetrievedChunk> hits = readOnlyTransaction.execute(status ->
+                chunkRepository.searchHierarchical(pdfId, queryEmbedding, hierarchicalSections, limit));
+        if (hits == null || hits.isEmpty()) {
+            hierarchicalFallbacks.incrementAndGet();
+            logger.debug("PDF {} has no sections, searching all chunks", pdfId);
+            return null;
+        }
+        return hits;
+    }
 
-        return filtered;
+    /**
+     * Search on the configured in-process engine; null when that engine is pgvector itself
+     * or does not hold the document yet.
+     */
+    private List<RetrievedChunk> inProcessSearch(Long pdfId, float[] queryEmbedding, int limit) {
+        return engine == pgVectorStore ? null : engine.search(pdfId, queryEmbedding, limit);
     }
 
     /**
-     * Overloaded method with default Top K.
+     * Embeddings of the candidates for re-ranking: from the in-process engine when it holds
+     * the document, otherwise one primary-key query.
      */
-    public List<PdfChunk> findSimilarChunks(Long pdfId, float[] queryEmbedding) {
-        return findSimilarChunks(pdfId, queryEmbedding, DEFAULT_TOP_K);
+    private Map<Long, float[]> candidateEmbeddings(Long pdfId, List<RetrievedChunk> candidates) {
+        List<Long> ids = candidates.stream().map(RetrievedChunk::getId).collect(Collectors.toList());
+        Map<Long, float[]> embeddings = engine == pgVectorStore ? null : engine.embeddings(pdfId, ids);
+        if (embeddings != null && embeddings.size() == ids.size()) {
+            return embeddings;
+        }
+        Map<Long, float[]> stored = readOnlyTransaction.execute(status -> chunkRepository.findEmbeddings(ids));
+        return stored == null ? Map.of() : stored;
     }
 
     /**
-     * Efficiently formats a float array as a pgvector string.
+     * pgvector search in a read-only transaction (joining the caller's, if any), so the
+     * index settings apply to this query only. ef_search is raised to the quantized
+     * candidate pool, which is larger than {@code limit}.
      */
-    private String formatVectorForPostgres(float[] embedding) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < embedding.length; i++) {
-            sb.append(String.format("%.10f", embedding[i]));
-            if (i < embedding.length - 1) {
-                sb.append(",");
-            }
+    private List<RetrievedChunk> pgSearch(Long pdfId, float[] queryEmbedding, int limit, SearchTuning tuning) {
+        SearchTuning poolTuning = tuning == null ? null : tuning.withMinEfSearch(pgVectorStore.candidatePool(limit));
+        List<RetrievedChunk> hits = readOnlyTransaction.execute(status -> {
+            searchTuner.apply(poolTuning);
+            return pgVectorStore.search(pdfId, queryEmbedding, limit);
+        });
+        return hits == null ? List.of() : hits;
+    }
+
+    private static TimedHits timed(Supplier<List<RetrievedChunk>> leg) {
+        long start = System.nanoTime();
+        List<RetrievedChunk> hits = leg.get();
+        return new TimedHits(hits, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static final class TimedHits {
+        private final List<RetrievedChunk> hits;
+        private final long millis;
+
+        private TimedHits(List<RetrievedChunk> hits, long millis) {
+            this.hits = hits;
+            this.millis = millis;
         }
-        sb.append("]");
-        return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package org.example.notebooklm.service;
+
+/**
+ * Per-query pgvector knobs: {@code hnsw.ef_search} and {@code ivfflat.probes}.
+ * A null value leaves the server setting untouched.
+ */
+public final class SearchTuning {
+
+    private final String profile;
+    private final Integer efSearch;
+    private final Integer probes;
+
+    public SearchTuning(String profile, Integer efSearch, Integer probes) {
+        this.profile = profile;
+        this.efSearch = efSearch;
+        this.probes = probes;
+    }
+
+    public String getProfile() { return profile; }
+
+    public Integer getEfSearch() { return efSearch; }
+
+    public Integer getProbes() { return probes; }
+
+    /**
+     * The same settings with {@code ef_search} raised to at least {@code pool}: an HNSW scan
+     * returns at most ef_search rows, so a smaller value would silently cut the candidate pool.
+     */
+    public SearchTuning withMinEfSearch(int pool) {
+        if (efSearch == null || efSearch >= pool) {
+            return this;
+        }
+        return new SearchTuning(profile, pool, probes);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchTuning{profile=" + profile + ", efSearch=" + efSearch + ", probes=" + probes + "}";
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.exception.ResourceNotFoundException;
+import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.model.PdfSection;
+import org.example.notebooklm.model.PgVectorCodec;
+import org.example.notebooklm.repository.PdfDocumentRepository;
+import org.example.notebooklm.repository.PdfSectionRepository;
+import org.example.notebooklm.util.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the section layer used by hierarchical retrieval.
+ * Consecutive chunks are grouped into sections that start at a heading-like line (once the
+ * current section has {@code retrieval.sections.min-chunks} chunks) and never exceed
+ * {@code retrieval.sections.max-chunks}; each section stores the normalized mean of its
+ * chunk embeddings. Sections are written while a document is processed, one at a time as
+ * they close, so no second pass over the chunks is needed.
+ */
+@Service
+public class SectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SectionService.class);
+
+    // מספור (1, 2.3, IV.) או מילת פתיחה מוכרת, ואחריהם טקסט
+    private static final Pattern NUMBERED_HEADING = Pattern.compile(
+            "^(\\d+(\\.\\d+)*\\.?|[IVXLC]+\\.|chapter|section|part|appendix|פרק|סעיף|חלק|נספח)\\s+\\S.*",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final int MAX_HEADING_LENGTH = 80;
+    private static final int MAX_TITLE_LENGTH = 200;
+
+    private final PdfSectionRepository sectionRepository;
+    private final PdfDocumentRepository documentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int minChunks;
+    private final int maxChunks;
+
+    public SectionService(PdfSectionRepository sectionRepository,
+                          PdfDocumentRepository documentRepository,
+                          JdbcTemplate jdbcTemplate,
+                          @Value("${retrieval.sections.min-chunks:4}") int minChunks,
+                          @Value("${retrieval.sections.max-chunks:16}") int maxChunks) {
+        this.sectionRepository = sectionRepository;
+        this.documentRepository = documentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.minChunks = Math.max(1, minChunks);
+        this.maxChunks = Math.max(this.minChunks, maxChunks);
+    }
+
+    /**
+     * Starts collecting the sections of a document whose chunks follow in chunk_index order.
+     */
+    public Builder start(PdfDocument document) {
+        return new Builder(document);
+    }
+
+    /**
+     * Recomputes the sections of a stored document, e.g. one ingested before sections existed.
+     *
+     * @return the number of sections written
+     */
+    @Transactional
+    public int rebuild(Long pdfId) {
+        PdfDocument document = documentRepository.findById(pdfId)
+                .orElseThrow(() -> new ResourceNotFoundException("PDF", pdfId));
+        sectionRepository.deleteByPdfDocumentId(pdfId);
+
+        Builder builder = start(document);
+        jdbcTemplate.query("SELECT chunk_index, text, CAST(embedding AS text) AS embedding FROM pdf_chunks " +
+                        "WHERE pdf_document_id = ? AND embedding IS NOT NULL ORDER BY chunk_index",
+                rs -> {
+                    builder.add(rs.getInt("chunk_index"), rs.getString("text"),
+                            PgVectorCodec.parse(rs.getString("embedding")));
+                }, pdfId);
+        return builder.finish();
+    }
+
+    /**
+     * The first heading-like line of a chunk, or null. The first and last lines of a chunk
+     * (except the document's first chunk) may be cut mid-line, so only inner lines count.
+     */
+    static String findHeading(int chunkIndex, String text) {
+        if (text == null) {
+            return null;
+        }
+        String[] lines = text.split("\\R");
+        for (int i = chunkIndex == 0 ? 0 : 1; i < lines.length - 1; i++) {
+            String line = lines[i].trim();
+            if (isHeading(line)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isHeading(String line) {
+        if (line.length() < 3 || line.length() > MAX_HEADING_LENGTH) {
+            return false;
+        }
+        char last = line.charAt(line.length() - 1);
+        if (last == '.' || last == ',' || last == ';') {
+            return false;
+        }
+        if (NUMBERED_HEADING.matcher(line).matches()) {
+            return true;
+        }
+        // שורה קצרה באותיות גדולות בלבד
+        int letters = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isLowerCase(c)) {
+                return false;
+            }
+            if (Character.isUpperCase(c)) {
+                letters++;
+            }
+        }
+        return letters >= 3;
+    }
+
+    /**
+     * Accumulates consecutive chunks into sections and saves each section when it closes.
+     * Not thread-safe; one builder per document being processed.
+     */
+    public final class Builder {
+
+        private final PdfDocument document;
+        private double[] sum;
+        private int count;
+        private int firstChunkIndex;
+        private int lastChunkIndex;
+        private String title;
+        private int sectionIndex;
+
+        private Builder(PdfDocument document) {
+            this.document = document;
+        }
+
+        public void add(int chunkIndex, String text, float[] embedding) {
+            String heading = findHeading(chunkIndex, text);
+            if (count >= maxChunks || (count >= minChunks && heading != null)) {
+                flush();
+            }
+            if (count == 0) {
+                firstChunkIndex = chunkIndex;
+                title = heading != null ? heading : preview(text);
+                sum = new double[embedding.length];
+            }
+            float[] unit = VectorMath.normalize(embedding);
+            for (int i = 0; i < unit.length && i < sum.length; i++) {
+                sum[i] += unit[i];
+            }
+            lastChunkIndex = chunkIndex;
+            count++;
+        }
+
+        /**
+         * Saves the open section.
+         *
+         * @return the number of sections written for the document
+         */
+        public int finish() {
+            flush();
+            logger.info("PDF {}: {} sections", document.getId(), sectionIndex);
+            return sectionIndex;
+        }
+
+        private void flush() {
+            if (count == 0) {
+                return;
+            }
+            float[] centroid = new float[sum.length];
+            for (int i = 0; i < sum.length; i++) {
+                centroid[i] = (float) (sum[i] / count);
+            }
+
+            PdfSection section = new PdfSection();
+            section.setPdfDocument(document);
+            section.setSectionIndex(sectionIndex++);
+            section.setFirstChunkIndex(firstChunkIndex);
+            section.setLastChunkIndex(lastChunkIndex);
+            section.setChunkCount(count);
+            section.setTitle(title);
+            section.setCentroid(VectorMath.normalize(centroid));
+            sectionRepository.save(section);
+            count = 0;
+        }
+
+        private String preview(String text) {
+            String trimmed = text == null ? "" : text.strip().replaceAll("\\s+", " ");
+            return trimmed.length() <= MAX_TITLE_LENGTH ? trimmed : trimmed.substring(0, MAX_TITLE_LENGTH);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.util.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Reuses answers for paraphrased questions.
+ * Past question embeddings are kept per document; when a new question embedding lies
+ * within {@code answer.semantic-cache.max-distance} (cosine distance) of a stored one,
+ * the stored answer is returned and retrieval and generation are skipped.
+ * The distribution of best-match distances is recorded so the threshold can be tuned.
+ */
+@Component
+public class SemanticAnswerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticAnswerCache.class);
+    private static final double BUCKET_WIDTH = 0.05;
+    private static final int BUCKETS = 10;
+
+    private final boolean enabled;
+    private final double maxDistance;
+    private final int maxEntriesPerDocument;
+    private final long ttlMillis;
+    private final Map<Long, Deque<Entry>> entriesByDocument = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // היסטוגרמה של המרחק הקרוב ביותר בכל חיפוש; התא האחרון הוא "מעל 0.45"
+    private final AtomicLongArray distanceHistogram = new AtomicLongArray(BUCKETS);
+
+    public SemanticAnswerCache(@Value("${answer.semantic-cache.enabled:true}") boolean enabled,
+                               @Value("${answer.semantic-cache.max-distance:0.08}") double maxDistance,
+                               @Value("${answer.semantic-cache.max-entries-per-document:200}") int maxEntriesPerDocument,
+                               @Value("${answer.semantic-cache.ttl-seconds:3600}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        this.maxEntriesPerDocument = Math.max(1, maxEntriesPerDocument);
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Returns a cached answer for a question close enough to {@code queryEmbedding}, or null.
+     */
+    public String lookup(Long pdfId, float[] queryEmbedding) {
+        if (!enabled) {
+            return null;
+        }
+        Deque<Entry> entries = entriesByDocument.get(pdfId);
+        if (entries == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        float[] query = VectorMath.normalize(queryEmbedding);
+        long now = System.currentTimeMillis();
+        Entry best = null;
+        double bestDistance = Double.MAX_VALUE;
+
+        synchronized (entries) {
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (now - entry.createdAt > ttlMillis) {
+                    it.remove();
+                    continue;
+                }
+                // שני הווקטורים מנורמלים, לכן מרחק קוסינוס = 1 - מכפלה סקלרית
+                double distance = 1.0 - VectorMath.dot(query, entry.embedding);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = entry;
+                }
+            }
+        }
+
+        if (best == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        distanceHistogram.incrementAndGet(Math.min(BUCKETS - 1, (int) (Math.max(0, bestDistance) / BUCKET_WIDTH)));
+        if (bestDistance > maxDistance) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        logger.info("Semantic cache hit for PDF {} (distance {}): \"{}\"",
+                pdfId, String.format(Locale.US, "%.4f", bestDistance), best.question);
+        return best.answer;
+    }
+
+    public void put(Long pdfId, String question, float[] queryEmbedding, String answer) {
+        if (!enabled) {
+            return;
+        }
+        Deque<Entry> entries = entriesByDocument.computeIfAbsent(pdfId, id -> new ArrayDeque<>());
+        synchronized (entries) {
+            entries.addLast(new Entry(question, VectorMath.normalize(queryEmbedding), answer));
+            while (entries.size() > maxEntriesPerDocument) {
+                entries.removeFirst();
+            }
+        }
+    }
+
+    public void invalidateDocument(Long pdfId) {
+        entriesByDocument.remove(pdfId);
+    }
+
+    public void invalidateAll() {
+        entriesByDocument.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long lookups = hitCount + missCount;
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            String label = i == BUCKETS - 1
+                    ? String.format(Locale.US, ">=%.2f", i * BUCKET_WIDTH)
+                    : String.format(Locale.US, "%.2f-%.2f", i * BUCKET_WIDTH, (i + 1) * BUCKET_WIDTH);
+            histogram.put(label, distanceHistogram.get(i));
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxDistance", maxDistance);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("documents", entriesByDocument.size());
+        stats.put("bestDistanceHistogram", histogram);
+        return stats;
+    }
+
+    private static final class Entry {
+        private final String question;
+        private final float[] embedding;
+        private final String answer;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Entry(String question, float[] embedding, String answer) {
+            this.question = question;
+            this.embedding = embedding;
+            this.answer = answer;
+        }
+    }
+}
@@ -1,16 +1,125 @@
 package org.example.notebooklm.service;
 
-import org.example.notebooklm.model.PdfChunk;
+import org.example.notebooklm.log.RetrievalLogger;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
+/**
+ * Drops retrieved chunks that are unlikely to help the answer, in three stages:
+ * <ol>
+ *     <li>absolute cutoff: cosine distance above {@code retrieval.filter.max-distance};</li>
+ *     <li>relative gap: farther than {@code retrieval.filter.max-gap} from the best hit;</li>
+ *     <li>elbow: everything after the largest jump between consecutive distances, when that
+ *     jump stands out from the others.</li>
+ * </ol>
+ * The absolute cutoff may drop every chunk; the other stages always keep at least
+ * {@code retrieval.filter.min-keep}. Each dropped chunk is reported with its reason.
+ */
 @Component
 public class SimilarityFilter {
 
-    public List<PdfChunk> filterByDynamicThreshold(List<PdfChunk> chunks, List<Double> distances) {
+    private final RetrievalLogger retrievalLogger;
+    private final double maxDistance;
+    private final double maxGap;
+    private final double elbowMinJump;
+    private final double elbowFactor;
+    private final int minKeep;
 
-        // אין distances יותר — מחזירים את מה שה‑DB כבר דירג
-        return chunks;
+    public SimilarityFilter(RetrievalLogger retrievalLogger,
+                            @Value("${retrieval.filter.max-distance:0.6}") double maxDistance,
+                            @Value("${retrieval.filter.max-gap:0.15}") double maxGap,
+                            @Value("${retrieval.filter.elbow.min-jump:0.05}") double elbowMinJump,
+                            @Value("${retrieval.filter.elbow.factor:2.5}") double elbowFactor,
+                            @Value("${retrieval.filter.min-keep:1}") int minKeep) {
+        this.retrievalLogger = retrievalLogger;
+        this.maxDistance = maxDistance;
+        this.maxGap = maxGap;
+        this.elbowMinJump = elbowMinJump;
+        this.elbowFactor = elbowFactor;
+        this.minKeep = Math.max(1, minKeep);
+    }
+
+    /**
+     * @param chunks retrieval results ordered by ascending distance
+     * @return the chunks that passed all stages, in the same order
+     */
+    public List<RetrievedChunk> filterByDynamicThreshold(List<RetrievedChunk> chunks) {
+        Map<RetrievedChunk, String> removed = new LinkedHashMap<>();
+        List<RetrievedChunk> kept = new ArrayList<>(chunks.size());
+
+        // 1. סף מוחלט
+        for (RetrievedChunk chunk : chunks) {
+            if (chunk.getDistance() > maxDistance) {
+                removed.put(chunk, String.format(Locale.US, "distance %.4f above cutoff %.4f",
+                        chunk.getDistance(), maxDistance));
+            } else {
+                kept.add(chunk);
+            }
+        }
+
+        // 2. מרחק יחסי מהתוצאה הטובה ביותר
+        if (kept.size() > minKeep) {
+            double best = kept.get(0).getDistance();
+            int cut = kept.size();
+            for (int i = minKeep; i < kept.size(); i++) {
+                if (kept.get(i).getDistance() - best > maxGap) {
+                    cut = i;
+                    break;
+                }
+            }
+            for (RetrievedChunk chunk : kept.subList(cut, kept.size())) {
+                removed.put(chunk, String.format(Locale.US, "gap %.4f from best exceeds %.4f",
+                        chunk.getDistance() - best, maxGap));
+            }
+            kept = new ArrayList<>(kept.subList(0, cut));
+        }
+
+        // 3. נקודת "מרפק" - קפיצה חדה במרחקים
+        int elbow = findElbow(kept);
+        if (elbow > 0) {
+            double jump = kept.get(elbow).getDistance() - kept.get(elbow - 1).getDistance();
+            for (RetrievedChunk chunk : kept.subList(elbow, kept.size())) {
+                removed.put(chunk, String.format(Locale.US, "after elbow (jump %.4f at rank %d)", jump, elbow));
+            }
+            kept = new ArrayList<>(kept.subList(0, elbow));
+        }
+
+        retrievalLogger.logRemovedChunks(removed);
+        return kept;
+    }
+
+    /**
+     * Index of the first chunk after the elbow, or -1 when there is no clear elbow.
+     * The elbow is the largest jump between consecutive distances; it counts only if it is
+     * at least {@code elbowMinJump} and {@code elbowFactor} times the mean of the other jumps.
+     */
+    private int findElbow(List<RetrievedChunk> chunks) {
+        if (chunks.size() < 3) {
+            return -1;
+        }
+        int jumps = chunks.size() - 1;
+        double total = 0;
+        double largest = -1;
+        int largestAt = -1;
+        for (int i = 0; i < jumps; i++) {
+            double jump = chunks.get(i + 1).getDistance() - chunks.get(i).getDistance();
+            total += jump;
+            if (jump > largest) {
+                largest = jump;
+                largestAt = i + 1;
+            }
+        }
+        if (largestAt < minKeep || largest < elbowMinJump) {
+            return -1;
+        }
+        double meanOfOthers = (total - largest) / (jumps - 1);
+        return largest >= elbowFactor * meanOfOthers ? largestAt : -1;
     }
 }
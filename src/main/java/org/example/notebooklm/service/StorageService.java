@@ -2,6 +2,7 @@ package org.example.notebooklm.service;
 
 import org.example.notebooklm.model.PdfChunk;
 import org.example.notebooklm.model.PdfDocument;
+import org.example.notebooklm.repository.PdfChunkBulkWriter;
 import org.example.notebooklm.repository.PdfChunkRepository;
 import org.example.notebooklm.repository.PdfDocumentRepository;
 import org.slf4j.Logger;
@@ -23,11 +24,14 @@ public class StorageService {
 
     private final PdfDocumentRepository documentRepository;
     private final PdfChunkRepository chunkRepository;
+    private final PdfChunkBulkWriter chunkWriter;
 
     public StorageService(PdfDocumentRepository documentRepository,
-                          PdfChunkRepository chunkRepository) {
+                          PdfChunkRepository chunkRepository,
+                          PdfChunkBulkWriter chunkWriter) {
         this.documentRepository = documentRepository;
         this.chunkRepository = chunkRepository;
+        this.chunkWriter = chunkWriter;
     }
 
     /**
@@ -54,20 +58,19 @@ public class StorageService {
     }
 
     /**
-     * Saves multiple chunks in a batch operation.
-     * שימוש ב-saveAll במקום לולאת save אינדיבידואלית לביצועים משופרים.
+     * Saves multiple chunks in one bulk write (COPY or batched INSERT, see {@link PdfChunkBulkWriter})
+     * and sets their ids. The chunks are not added to the document's managed collection:
+     * they are already stored, and cascading them again would insert them twice.
      */
     @Transactional
     public void saveChunks(List<PdfChunk> chunks, PdfDocument document) {
         logger.info("Saving batch of {} chunks for document ID: {}", chunks.size(), document.getId());
 
-        // עדכון הקישור הדו-כיווני עבור כל צ'אנק
         for (PdfChunk chunk : chunks) {
-            document.addChunk(chunk);
+            chunk.setPdfDocument(document);
         }
 
-        // ביצוע שמירה מאוחדת (Batch Insert)
-        chunkRepository.saveAll(chunks);
+        chunkWriter.write(chunks);
         logger.debug("Successfully saved all chunks for document {}", document.getId());
     }
 
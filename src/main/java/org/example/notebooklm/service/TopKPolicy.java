@@ -0,0 +1,20 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.RetrievedChunk;
+
+import java.util.List;
+
+/**
+ * Decides how many of the over-fetched candidates go into the prompt.
+ * Implementations are Spring beans; {@code retrieval.topk.policy} selects one by name.
+ */
+public interface TopKPolicy {
+
+    String getName();
+
+    /**
+     * @param candidates retrieval candidates ordered by ascending distance
+     * @return a prefix of {@code candidates}
+     */
+    List<RetrievedChunk> select(String question, List<RetrievedChunk> candidates);
+}
@@ -1,17 +1,93 @@
 package org.example.notebooklm.service;
 
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.util.TokenEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Chooses the chunks that go into the prompt.
+ * Retrieval over-fetches {@link #candidateCount()} candidates once; the configured
+ * {@link TopKPolicy} picks K from them and the result is then trimmed to the context
+ * token budget ({@code retrieval.context.max-tokens}), always keeping the best chunk.
+ */
 @Component
 public class TopKSelector {
 
-    public int selectTopK(String question) {
-        int length = question.length();
+    private static final Logger logger = LoggerFactory.getLogger(TopKSelector.class);
+
+    private final TopKPolicy policy;
+    private final int candidateCount;
+    private final int maxContextTokens;
+
+    public TopKSelector(List<TopKPolicy> policies,
+                        @Value("${retrieval.topk.policy:adaptive}") String policyName,
+                        @Value("${retrieval.topk.candidates:20}") int candidateCount,
+                        @Value("${retrieval.context.max-tokens:3000}") int maxContextTokens) {
+        Map<String, TopKPolicy> byName = policies.stream()
+                .collect(Collectors.toMap(TopKPolicy::getName, Function.identity()));
+        this.policy = byName.get(policyName);
+        if (this.policy == null) {
+            throw new IllegalStateException("Unknown retrieval.topk.policy: " + policyName
+                    + " (available: " + byName.keySet() + ")");
+        }
+        this.candidateCount = candidateCount;
+        this.maxContextTokens = maxContextTokens;
+    }
+
+    public int candidateCount() {
+        return candidateCount;
+    }
+
+    public int maxContextTokens() {
+        return maxContextTokens;
+    }
+
+    /**
+     * How many chunks the policy would put into the prompt, for re-rankers that choose
+     * which ones themselves.
+     *
+     * @param candidates filtered candidates ordered by ascending distance
+     */
+    public int chooseK(String question, List<RetrievedChunk> candidates) {
+        int k = policy.select(question, candidates).size();
+        logger.debug("Top-K policy '{}' chose K={} of {} candidates", policy.getName(), k, candidates.size());
+        return k;
+    }
+
+    /**
+     * @param candidates filtered candidates ordered by ascending distance
+     */
+    public List<RetrievedChunk> select(String question, List<RetrievedChunk> candidates) {
+        List<RetrievedChunk> selected = policy.select(question, candidates);
+        List<RetrievedChunk> withinBudget = trimToBudget(selected);
 
-        if (length < 50) return 3;
-        if (length < 150) return 5;
-        if (length < 300) return 8;
+        logger.info("Top-K policy '{}' chose {} of {} candidates ({} within token budget {})",
+                policy.getName(), selected.size(), candidates.size(), withinBudget.size(), maxContextTokens);
+        return withinBudget;
+    }
 
-        return 10;
+    /**
+     * Longest prefix of {@code chunks} whose estimated size fits the context token budget
+     * (at least the first chunk).
+     */
+    public List<RetrievedChunk> trimToBudget(List<RetrievedChunk> chunks) {
+        int tokens = 0;
+        int k = 0;
+        while (k < chunks.size()) {
+            tokens += TokenEstimator.estimate(chunks.get(k).getText());
+            if (k > 0 && tokens > maxContextTokens) {
+                break;
+            }
+            k++;
+        }
+        return chunks.subList(0, k);
     }
 }
@@ -0,0 +1,143 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.PgVectorCodec;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.repository.HnswVectorStore;
+import org.example.notebooklm.repository.InMemoryVectorStore;
+import org.example.notebooklm.repository.PdfChunkRepository;
+import org.example.notebooklm.repository.PgVectorStore;
+import org.example.notebooklm.repository.VectorStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Compares the retrieval engines on one document: recall@k and average latency of
+ * pgvector (with its index), the in-memory store and the HNSW graph, each against an
+ * exact pgvector scan, using sampled chunks of the document as queries.
+ */
+@Service
+public class VectorEngineReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorEngineReportService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PdfChunkRepository chunkRepository;
+    private final PgVectorStore pgVectorStore;
+    private final InMemoryVectorStore memoryVectorStore;
+    private final HnswVectorStore hnswVectorStore;
+    private final VectorSearchTuner searchTuner;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public VectorEngineReportService(JdbcTemplate jdbcTemplate,
+                                     PdfChunkRepository chunkRepository,
+                                     PgVectorStore pgVectorStore,
+                                     InMemoryVectorStore memoryVectorStore,
+                                     HnswVectorStore hnswVectorStore,
+                                     VectorSearchTuner searchTuner,
+                                     PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkRepository = chunkRepository;
+        this.pgVectorStore = pgVectorStore;
+        this.memoryVectorStore = memoryVectorStore;
+        this.hnswVectorStore = hnswVectorStore;
+        this.searchTuner = searchTuner;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public Map<String, Object> report(Long pdfId, int samples, int k) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("pdfId", pdfId);
+        List<float[]> queries = jdbcTemplate.query(
+                "SELECT CAST(embedding AS text) AS embedding FROM pdf_chunks " +
+                        "WHERE pdf_document_id = ? AND embedding IS NOT NULL ORDER BY random() LIMIT ?",
+                (rs, rowNum) -> PgVectorCodec.parse(rs.getString("embedding")), pdfId, samples);
+        if (queries.isEmpty()) {
+            report.put("message", "Document has no embedded chunks");
+            return report;
+        }
+
+        List<Set<Long>> baseline = new ArrayList<>(queries.size());
+        long baselineNanos = 0;
+        for (float[] query : queries) {
+            long start = System.nanoTime();
+            baseline.add(ids(readOnlyTransaction.execute(status -> {
+                // סריקה מלאה ומדויקת - זה ה-ground truth
+                jdbcTemplate.queryForObject("SELECT set_config('enable_indexscan', 'off', true)", String.class);
+                return chunkRepository.searchSimilar(pdfId, query, k);
+            })));
+            baselineNanos += System.nanoTime() - start;
+        }
+        report.put("samples", queries.size());
+        report.put("k", k);
+        report.put("exactAvgMs", baselineNanos / 1_000_000.0 / queries.size());
+
+        Map<String, Object> engines = new LinkedHashMap<>();
+        engines.put(pgVectorStore.getName(), measure(pgVectorStore, pdfId, queries, baseline, k, () -> true));
+        engines.put(memoryVectorStore.getName(), measure(memoryVectorStore, pdfId, queries, baseline, k,
+                () -> memoryVectorStore.ensureLoaded(pdfId)));
+        engines.put(hnswVectorStore.getName(), measure(hnswVectorStore, pdfId, queries, baseline, k,
+                () -> hnswVectorStore.ensureBuilt(pdfId)));
+        report.put("engines", engines);
+        return report;
+    }
+
+    private Map<String, Object> measure(VectorStore store, Long pdfId, List<float[]> queries,
+                                        List<Set<Long>> baseline, int k, Supplier<Boolean> prepare) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long prepareStart = System.nanoTime();
+        if (!prepare.get()) {
+            result.put("available", false);
+            return result;
+        }
+        result.put("prepareMs", (System.nanoTime() - prepareStart) / 1_000_000);
+
+        double recallSum = 0;
+        long nanos = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            float[] query = queries.get(i);
+            long start = System.nanoTime();
+            Set<Long> found = ids(store == pgVectorStore
+                    ? readOnlyTransaction.execute(status -> {
+                        searchTuner.apply(searchTuner.defaultTuning());
+                        return store.search(pdfId, query, k);
+                    })
+                    : store.search(pdfId, query, k));
+            nanos += System.nanoTime() - start;
+
+            Set<Long> expected = baseline.get(i);
+            found.retainAll(expected);
+            recallSum += expected.isEmpty() ? 1.0 : (double) found.size() / expected.size();
+        }
+
+        result.put("available", true);
+        result.put("recallAtK", recallSum / queries.size());
+        result.put("avgMs", nanos / 1_000_000.0 / queries.size());
+        logger.info("Engine report for PDF {}: {} recall@{} = {}", pdfId, store.getName(), k,
+                String.format(Locale.US, "%.3f", recallSum / queries.size()));
+        return result;
+    }
+
+    private static Set<Long> ids(List<RetrievedChunk> chunks) {
+        Set<Long> ids = new HashSet<>();
+        if (chunks != null) {
+            for (RetrievedChunk chunk : chunks) {
+                ids.add(chunk.getId());
+            }
+        }
+        return ids;
+    }
+}
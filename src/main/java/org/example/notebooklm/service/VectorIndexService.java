@@ -0,0 +1,274 @@
+package org.example.notebooklm.service;
+
+import org.example.notebooklm.model.VectorQuantization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Manages the indexes behind similarity search on {@code pdf_chunks}.
+ * The schema itself comes from {@code ddl-auto=update}, which creates no indexes,
+ * so this service adds a btree on the document foreign key and an HNSW or IVFFlat
+ * index (cosine ops) on the embedding column. All of them are built with
+ * CREATE INDEX CONCURRENTLY / REINDEX CONCURRENTLY on a single maintenance thread,
+ * so ingestion keeps writing while they build.
+ * Only when {@code retrieval.mode=hybrid} does it add the generated {@code text_tsv} column
+ * (a one-time table rewrite under an exclusive lock) and its GIN index. For quantized search
+ * ({@code vector.quantization}) it adds an HNSW expression index over the
+ * halfvec or binary-quantized form of the embedding. Per-document and library-wide search then
+ * run on the quantized index, so the full-precision vector index is only built when
+ * {@code vector.quantization.keep-full-index} is set.
+ */
+@Service
+public class VectorIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexService.class);
+
+    public static final String DOCUMENT_INDEX = "idx_pdf_chunks_document";
+    public static final String HNSW_INDEX = "idx_pdf_chunks_embedding_hnsw";
+    public static final String IVFFLAT_INDEX = "idx_pdf_chunks_embedding_ivfflat";
+    public static final String HALFVEC_INDEX = "idx_pdf_chunks_embedding_halfvec";
+    public static final String BINARY_INDEX = "idx_pdf_chunks_embedding_bit";
+    public static final String FULL_TEXT_INDEX = "idx_pdf_chunks_text_tsv";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AsyncTaskExecutor maintenanceExecutor;
+    private final boolean autoCreate;
+    private final String defaultType;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    private final int ivfflatLists;
+    private final String textSearchConfig;
+    private final VectorQuantization quantization;
+    private final boolean keepFullIndex;
+    private final boolean fullText;
+
+    public VectorIndexService(JdbcTemplate jdbcTemplate,
+                              @Qualifier("maintenanceExecutor") AsyncTaskExecutor maintenanceExecutor,
+                              @Value("${vector.index.auto-create:true}") boolean autoCreate,
+                              @Value("${vector.index.type:hnsw}") String defaultType,
+                              @Value("${vector.index.hnsw.m:16}") int hnswM,
+                              @Value("${vector.index.hnsw.ef-construction:64}") int hnswEfConstruction,
+                              @Value("${vector.index.ivfflat.lists:0}") int ivfflatLists,
+                              @Value("${retrieval.hybrid.text-search-config:simple}") String textSearchConfig,
+                              @Value("${vector.quantization:none}") String quantization,
+                              @Value("${vector.quantization.keep-full-index:false}") boolean keepFullIndex,
+                              @Value("${retrieval.mode:vector}") String retrievalMode) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.autoCreate = autoCreate;
+        this.defaultType = defaultType;
+        this.hnswM = hnswM;
+        this.hnswEfConstruction = hnswEfConstruction;
+        this.ivfflatLists = ivfflatLists;
+        if (!textSearchConfig.matches("[a-z_]+")) {
+            throw new IllegalStateException("Invalid text search configuration: " + textSearchConfig);
+        }
+        this.textSearchConfig = textSearchConfig;
+        this.quantization = VectorQuantization.fromProperty(quantization);
+        this.keepFullIndex = keepFullIndex;
+        this.fullText = "hybrid".equalsIgnoreCase(retrievalMode);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createMissingIndexes() {
+        if (!autoCreate) {
+            return;
+        }
+        maintenanceExecutor.execute(() -> {
+            try {
+                ensureDocumentIndex();
+                if (fullText) {
+                    ensureFullTextIndex();
+                }
+                if (quantization == VectorQuantization.NONE || keepFullIndex) {
+                    buildVectorIndex(normalizeType(defaultType), false);
+                } else {
+                    // החיפוש עובר על האינדקס הדחוס; אינדקס מלא היה מבטל את החיסכון בזיכרון
+                    logger.info("Skipping the full-precision {} index: search uses the {} index " +
+                            "(set vector.quantization.keep-full-index=true to keep it)", defaultType, quantization);
+                }
+                if (quantization != VectorQuantization.NONE) {
+                    buildVectorIndex(quantization.name().toLowerCase(Locale.ROOT), false);
+                }
+            } catch (Exception e) {
+                logger.error("Automatic index creation failed", e);
+            }
+        });
+    }
+
+    /**
+     * Schedules a vector index build in the background.
+     *
+     * @param type    "hnsw", "ivfflat", or "halfvec" / "binary" for the quantized HNSW indexes
+     * @param rebuild whether an existing index should be rebuilt (REINDEX CONCURRENTLY)
+     */
+    public void scheduleBuild(String type, boolean rebuild) {
+        String normalized = normalizeType(type);
+        maintenanceExecutor.execute(() -> {
+            try {
+                ensureDocumentIndex();
+                buildVectorIndex(normalized, rebuild);
+            } catch (Exception e) {
+                logger.error("Building {} index failed", normalized, e);
+            }
+        });
+    }
+
+    /**
+     * Schedules dropping a vector index in the background (DROP INDEX CONCURRENTLY).
+     */
+    public void scheduleDrop(String type) {
+        String indexName = indexName(normalizeType(type));
+        maintenanceExecutor.execute(() -> {
+            try {
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+                logger.info("Dropped index {}", indexName);
+            } catch (Exception e) {
+                logger.error("Dropping index {} failed", indexName, e);
+            }
+        });
+    }
+
+    /**
+     * Indexes on pdf_chunks with validity and size, plus progress of any running build.
+     */
+    public Map<String, Object> describeIndexes() {
+        List<Map<String, Object>> indexes = jdbcTemplate.queryForList(
+                "SELECT c.relname AS name, i.indisvalid AS valid, " +
+                        "pg_size_pretty(pg_relation_size(c.oid)) AS size, pg_get_indexdef(c.oid) AS definition " +
+                        "FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+                        "WHERE i.indrelid = 'pdf_chunks'::regclass ORDER BY c.relname");
+        List<Map<String, Object>> progress = jdbcTemplate.queryForList(
+                "SELECT p.phase, p.blocks_done, p.blocks_total, p.tuples_done, p.tuples_total " +
+                        "FROM pg_stat_progress_create_index p WHERE p.relid = 'pdf_chunks'::regclass");
+        return Map.of("indexes", indexes, "inProgress", progress);
+    }
+
+    /**
+     * Whether the index serving the given quantization exists and is valid.
+     */
+    public boolean isQuantizedIndexReady(VectorQuantization quantization) {
+        String indexName = quantization == VectorQuantization.HALFVEC ? HALFVEC_INDEX : BINARY_INDEX;
+        return Boolean.TRUE.equals(indexValidity(indexName));
+    }
+
+    private void ensureDocumentIndex() {
+        if (Boolean.FALSE.equals(indexValidity(DOCUMENT_INDEX))) {
+            logger.warn("Index {} is invalid (interrupted build), dropping it", DOCUMENT_INDEX);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + DOCUMENT_INDEX);
+        }
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + DOCUMENT_INDEX +
+                " ON pdf_chunks (pdf_document_id, chunk_index)");
+    }
+
+    /**
+     * Adds the generated tsvector column (once; this rewrites the table) and its GIN index.
+     * The text search configuration is fixed when the column is created.
+     */
+    private void ensureFullTextIndex() {
+        jdbcTemplate.execute("ALTER TABLE pdf_chunks ADD COLUMN IF NOT EXISTS text_tsv tsvector " +
+                "GENERATED ALWAYS AS (to_tsvector('" + textSearchConfig + "', coalesce(text, ''))) STORED");
+        if (Boolean.FALSE.equals(indexValidity(FULL_TEXT_INDEX))) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + FULL_TEXT_INDEX);
+        }
+        jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + FULL_TEXT_INDEX +
+                " ON pdf_chunks USING gin (text_tsv)");
+    }
+
+    private void buildVectorIndex(String type, boolean rebuild) {
+        String indexName = indexName(type);
+        Boolean valid = indexValidity(indexName);
+
+        // בנייה קודמת שנכשלה משאירה אינדקס INVALID - מוחקים ובונים מחדש
+        if (Boolean.FALSE.equals(valid)) {
+            logger.warn("Index {} is invalid (interrupted build), dropping it", indexName);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+            valid = null;
+        }
+
+        long start = System.currentTimeMillis();
+        if (valid != null) {
+            if (!rebuild) {
+                logger.info("Index {} already exists", indexName);
+                return;
+            }
+            logger.info("Rebuilding index {} concurrently", indexName);
+            jdbcTemplate.execute("REINDEX INDEX CONCURRENTLY " + indexName);
+        } else {
+            logger.info("Building index {} concurrently", indexName);
+            jdbcTemplate.execute(createStatement(type, indexName));
+        }
+        logger.info("Index {} ready after {} ms", indexName, System.currentTimeMillis() - start);
+    }
+
+    private String createStatement(String type, String indexName) {
+        // אינדקסי ביטוי: הווקטור הדחוס קיים רק באינדקס, הטבלה שומרת את הווקטור המלא ל-re-rank
+        if ("halfvec".equals(type)) {
+            return String.format(Locale.ROOT,
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON pdf_chunks " +
+                            "USING hnsw ((CAST(embedding AS halfvec(%d))) halfvec_cosine_ops) " +
+                            "WITH (m = %d, ef_construction = %d)",
+                    indexName, VectorQuantization.DIMENSIONS, hnswM, hnswEfConstruction);
+        }
+        if ("binary".equals(type)) {
+            return String.format(Locale.ROOT,
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON pdf_chunks " +
+                            "USING hnsw ((CAST(binary_quantize(embedding) AS bit(%d))) bit_hamming_ops) " +
+                            "WITH (m = %d, ef_construction = %d)",
+                    indexName, VectorQuantization.DIMENSIONS, hnswM, hnswEfConstruction);
+        }
+        if ("hnsw".equals(type)) {
+            return String.format(Locale.ROOT,
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON pdf_chunks " +
+                            "USING hnsw (embedding vector_cosine_ops) WITH (m = %d, ef_construction = %d)",
+                    indexName, hnswM, hnswEfConstruction);
+        }
+        // IVFFlat לומד את מרכזי הרשימות מהנתונים הקיימים - ברירת מחדל rows/1000
+        int lists = ivfflatLists > 0 ? ivfflatLists : defaultIvfflatLists();
+        return String.format(Locale.ROOT,
+                "CREATE INDEX CONCURRENTLY IF NOT EXISTS %s ON pdf_chunks " +
+                        "USING ivfflat (embedding vector_cosine_ops) WITH (lists = %d)",
+                indexName, lists);
+    }
+
+    private int defaultIvfflatLists() {
+        Long rows = jdbcTemplate.queryForObject("SELECT count(*) FROM pdf_chunks", Long.class);
+        return (int) Math.max(1, Math.min(10_000, (rows == null ? 0 : rows) / 1000));
+    }
+
+    private Boolean indexValidity(String indexName) {
+        List<Boolean> result = jdbcTemplate.queryForList(
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?",
+                Boolean.class, indexName);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    private static String normalizeType(String type) {
+        String normalized = type == null ? "" : type.toLowerCase(Locale.ROOT);
+        if (!List.of("hnsw", "ivfflat", "halfvec", "binary").contains(normalized)) {
+            throw new IllegalArgumentException("Unsupported vector index type: " + type
+                    + " (expected hnsw, ivfflat, halfvec or binary)");
+        }
+        return normalized;
+    }
+
+    private static String indexName(String type) {
+        return switch (type) {
+            case "hnsw" -> HNSW_INDEX;
+            case "halfvec" -> HALFVEC_INDEX;
+            case "binary" -> BINARY_INDEX;
+            default -> IVFFLAT_INDEX;
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.notebooklm.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves and applies per-query recall/latency settings for the vector index.
+ * Three profiles are available (fast, balanced, accurate); callers may override
+ * the profile values per request. Settings are applied with
+ * {@code set_config(..., true)}, i.e. SET LOCAL, so they only affect the current
+ * transaction and never leak to other users of the pooled connection.
+ * <p>
+ * Per-document queries filter on {@code pdf_document_id} while ordering by distance, so the
+ * planner may pick the table-wide HNSW index and post-filter its {@code ef_search}
+ * candidates, which leaves small documents in a large table with fewer hits than asked for
+ * (or none). On pgvector 0.8+ {@code hnsw.iterative_scan} ({@code retrieval.tuning.iterative-scan})
+ * makes the scan continue until enough rows pass the filter; older versions are detected and
+ * a warning is logged once.
+ */
+@Component
+public class VectorSearchTuner {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorSearchTuner.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String defaultProfile;
+    private final Map<String, SearchTuning> profiles;
+    private final String iterativeScan;
+    // null עד הבדיקה הראשונה מול ה-DB
+    private volatile Boolean iterativeScanSupported;
+
+    public VectorSearchTuner(JdbcTemplate jdbcTemplate,
+                             @Value("${retrieval.tuning.default-profile:balanced}") String defaultProfile,
+                             @Value("${retrieval.tuning.fast.ef-search:20}") int fastEfSearch,
+                             @Value("${retrieval.tuning.fast.probes:1}") int fastProbes,
+                             @Value("${retrieval.tuning.balanced.ef-search:40}") int balancedEfSearch,
+                             @Value("${retrieval.tuning.balanced.probes:10}") int balancedProbes,
+                             @Value("${retrieval.tuning.accurate.ef-search:200}") int accurateEfSearch,
+                             @Value("${retrieval.tuning.accurate.probes:40}") int accurateProbes,
+                             @Value("${retrieval.tuning.iterative-scan:strict_order}") String iterativeScan) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.defaultProfile = defaultProfile.toLowerCase(Locale.ROOT);
+        this.profiles = Map.of(
+                "fast", new SearchTuning("fast", fastEfSearch, fastProbes),
+                "balanced", new SearchTuning("balanced", balancedEfSearch, balancedProbes),
+                "accurate", new SearchTuning("accurate", accurateEfSearch, accurateProbes)
+        );
+        this.iterativeScan = iterativeScan.toLowerCase(Locale.ROOT);
+        if (!List.of("off", "strict_order", "relaxed_order").contains(this.iterativeScan)) {
+            throw new IllegalStateException("retrieval.tuning.iterative-scan must be off, strict_order or relaxed_order: "
+                    + iterativeScan);
+        }
+    }
+
+    /**
+     * Builds the tuning for a request: the named profile (or the default one),
+     * with explicit values taking precedence.
+     */
+    public SearchTuning resolve(String profile, Integer efSearch, Integer probes) {
+        String name = profile == null || profile.isBlank() ? defaultProfile : profile.toLowerCase(Locale.ROOT);
+        SearchTuning base = profiles.get(name);
+        if (base == null) {
+            throw new IllegalArgumentException("Unknown retrieval profile: " + profile
+                    + " (expected one of " + profiles.keySet() + ")");
+        }
+        return new SearchTuning(name,
+                efSearch != null ? efSearch : base.getEfSearch(),
+                probes != null ? probes : base.getProbes());
+    }
+
+    public SearchTuning defaultTuning() {
+        return resolve(null, null, null);
+    }
+
+    /**
+     * Applies the tuning to the current transaction. Must be called inside a
+     * transaction that also runs the similarity query.
+     */
+    public void apply(SearchTuning tuning) {
+        if (tuning == null) {
+            return;
+        }
+        if (tuning.getEfSearch() != null) {
+            jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', ?, true)",
+                    String.class, String.valueOf(tuning.getEfSearch()));
+        }
+        if (!"off".equals(iterativeScan) && isIterativeScanSupported()) {
+            jdbcTemplate.queryForObject("SELECT set_config('hnsw.iterative_scan', ?, true)", String.class, iterativeScan);
+        }
+        if (tuning.getProbes() != null) {
+            jdbcTemplate.queryForObject("SELECT set_config('ivfflat.probes', ?, true)",
+                    String.class, String.valueOf(tuning.getProbes()));
+        }
+        logger.debug("Applied {}", tuning);
+    }
+
+    /**
+     * Whether the installed pgvector (0.8+) knows {@code hnsw.iterative_scan}; setting an
+     * unknown hnsw.* parameter would fail the query.
+     */
+    private boolean isIterativeScanSupported() {
+        Boolean supported = iterativeScanSupported;
+        if (supported != null) {
+            return supported;
+        }
+        List<String> versions = jdbcTemplate.queryForList(
+                "SELECT extversion FROM pg_extension WHERE extname = 'vector'", String.class);
+        supported = !versions.isEmpty() && atLeast(versions.get(0), 0, 8);
+        if (!supported) {
+            logger.warn("pgvector {} has no hnsw.iterative_scan: per-document searches that use the HNSW index " +
+                    "may return fewer hits than requested; upgrade to 0.8+ or raise ef_search",
+                    versions.isEmpty() ? "(not installed)" : versions.get(0));
+        }
+        iterativeScanSupported = supported;
+        return supported;
+    }
+
+    private static boolean atLeast(String version, int major, int minor) {
+        String[] parts = version.split("\\.");
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -1,26 +1,340 @@
 package org.example.notebooklm.util;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.example.notebooklm.exception.IngestionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Utility class responsible only for extracting text from PDF files.
- * Keeps PdfController and PdfService clean and SOLID.
+ * Extracts the text of a PDF page by page.
+ * Documents are loaded from a file with a mixed memory setting: at most
+ * {@code ingestion.extraction.max-main-memory-mb} of parsed streams stay on the heap and the
+ * rest spills to temp files, so large scanned PDFs do not exhaust memory. Pages are split into
+ * ranges of {@code ingestion.extraction.pages-per-task} that are stripped in parallel on the
+ * extraction executor (PDFBox documents are not thread-safe, so each concurrent task works on
+ * its own loaded copy) and handed out in page order while later ranges are still being extracted.
  */
 @Component
 public class PdfTextExtractor {
 
+    private static final Logger logger = LoggerFactory.getLogger(PdfTextExtractor.class);
+
+    private final AsyncTaskExecutor executor;
+    private final int parallelism;
+    private final int pagesPerTask;
+    private final long maxMainMemoryBytes;
+    private final File tempDir;
+
+    public PdfTextExtractor(@Qualifier("extractionExecutor") AsyncTaskExecutor executor,
+                            @Value("${ingestion.extraction.parallelism:0}") int parallelism,
+                            @Value("${ingestion.extraction.pages-per-task:8}") int pagesPerTask,
+                            @Value("${ingestion.extraction.max-main-memory-mb:16}") long maxMainMemoryMb,
+                            @Value("${ingestion.extraction.temp-dir:}") String tempDir) {
+        this.executor = executor;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pagesPerTask = Math.max(1, pagesPerTask);
+        this.maxMainMemoryBytes = Math.max(0, maxMainMemoryMb) * 1024 * 1024;
+        this.tempDir = tempDir.isBlank() ? null : new File(tempDir);
+    }
+
     public String extractText(MultipartFile file) throws IOException {
-        try (InputStream input = file.getInputStream();
-             PDDocument document = PDDocument.load(input)) {
+        try (InputStream input = file.getInputStream()) {
+            return extractText(input);
+        }
+    }
+
+    /**
+     * Copies the stream to a temp file and extracts all pages.
+     */
+    public String extractText(InputStream input) throws IOException {
+        Path file = createTempFile();
+        try {
+            Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+            try (PageStream pages = open(file)) {
+                StringBuilder text = new StringBuilder();
+                pages.forEachRemaining(text::append);
+                return text.toString();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Starts extracting {@code pdfFile}. The file must stay in place until the stream is closed.
+     */
+    public PageStream open(Path pdfFile) throws IOException {
+        int pageCount;
+        try (PDDocument document = load(pdfFile)) {
+            pageCount = document.getNumberOfPages();
+        }
+        return new PageStream(pdfFile, pageCount);
+    }
+
+    public Path createTempFile() throws IOException {
+        return tempDir == null
+                ? Files.createTempFile("pdf-", ".pdf")
+                : Files.createTempFile(tempDir.toPath(), "pdf-", ".pdf");
+    }
+
+    private PDDocument load(Path pdfFile) throws IOException {
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        if (tempDir != null) {
+            memory.setTempDir(tempDir);
+        }
+        return PDDocument.load(pdfFile.toFile(), memory);
+    }
+
+    /**
+     * Page texts in page order. Extraction runs ahead of the reader by at most
+     * {@code 2 * parallelism} ranges; {@link #close()} stops it early.
+     * Each range is its own executor task and at most {@code parallelism} of a stream's tasks
+     * are queued or running. A task never waits for the reader: when the window is full it
+     * returns, and the reader schedules the next range as it consumes one. The executor is
+     * shared by all ingestion jobs, so a stream whose reader is slow does not hold threads the
+     * other streams need. Loaded documents are pooled per stream and reused across tasks.
+     */
+    public final class PageStream implements Iterator<String>, Closeable {
+
+        private final Path file;
+        private final int pageCount;
+        private final int rangeCount;
+        private final AtomicReferenceArray<CompletableFuture<List<String>>> ranges;
+        private final AtomicInteger nextRange = new AtomicInteger();
+        private final AtomicInteger scheduled = new AtomicInteger();
+        private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+        private final Semaphore window;
+        private final long start = System.nanoTime();
+        private volatile boolean closed;
+
+        private Iterator<String> current = Collections.emptyIterator();
+        private int consumedRanges;
+
+        private PageStream(Path file, int pageCount) {
+            this.file = file;
+            this.pageCount = pageCount;
+            this.rangeCount = (pageCount + pagesPerTask - 1) / pagesPerTask;
+            this.ranges = new AtomicReferenceArray<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++) {
+                ranges.set(i, new CompletableFuture<>());
+            }
+            this.window = new Semaphore(2 * parallelism);
+
+            logger.info("Extracting {} pages of {} in {} ranges on up to {} threads",
+                    pageCount, file.getFileName(), rangeCount, Math.min(parallelism, rangeCount));
+            schedule();
+        }
+
+        public int getPageCount() {
+            return pageCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (consumedRanges >= rangeCount) {
+                    return false;
+                }
+                current = await(consumedRanges).iterator();
+                // טווח שנקרא לא מוחזק יותר בזיכרון
+                ranges.set(consumedRanges, null);
+                consumedRanges++;
+                window.release();
+                schedule();
+                if (consumedRanges == rangeCount) {
+                    logger.info("Extracted {} pages of {} in {} ms", pageCount, file.getFileName(),
+                            (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closeIdle();
+        }
+
+        private List<String> await(int range) {
+            try {
+                return ranges.get(range).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IngestionException("Interrupted while extracting PDF text", e);
+            } catch (ExecutionException e) {
+                int first = range * pagesPerTask + 1;
+                throw new IngestionException("Failed to extract text from PDF pages " + first + "-"
+                        + Math.min(pageCount, first + pagesPerTask - 1) + ": " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        /**
+         * Submits tasks while the window has room, ranges are left and fewer than
+         * {@code parallelism} tasks of this stream are pending.
+         */
+        private void schedule() {
+            while (!closed && nextRange.get() < rangeCount && window.availablePermits() > 0) {
+                int pending = scheduled.get();
+                if (pending >= parallelism) {
+                    return;
+                }
+                if (!scheduled.compareAndSet(pending, pending + 1)) {
+                    continue;
+                }
+                try {
+                    executor.execute(this::extractNextRange);
+                } catch (RuntimeException e) {
+                    scheduled.decrementAndGet();
+                    failRemaining(e);
+                    return;
+                }
+            }
+        }
+
+        private void extractNextRange() {
+            Worker worker = null;
+            try {
+                if (closed || !window.tryAcquire()) {
+                    return;
+                }
+                int range = nextRange.getAndIncrement();
+                if (range >= rangeCount) {
+                    window.release();
+                    return;
+                }
+                int first = range * pagesPerTask + 1;
+                int last = Math.min(pageCount, first + pagesPerTask - 1);
+                try {
+                    worker = idle.poll();
+                    if (worker == null) {
+                        worker = new Worker(load(file));
+                    }
+                    ranges.get(range).complete(worker.stripper.extract(worker.document, first, last));
+                } catch (IOException | RuntimeException e) {
+                    ranges.get(range).completeExceptionally(e);
+                    if (worker == null) {
+                        // המסמך לא נטען - גם שאר הטווחים ייכשלו, אז לא משאירים את הקורא לחכות
+                        failRemaining(e);
+                    }
+                }
+            } finally {
+                if (worker != null) {
+                    idle.offer(worker);
+                    if (closed) {
+                        closeIdle();
+                    }
+                }
+                // אחרי הירידה במונה: שחרור של הקורא שלא ראה מקום פנוי יתוזמן כאן
+                scheduled.decrementAndGet();
+                schedule();
+            }
+        }
+
+        private void failRemaining(Exception cause) {
+            closed = true;
+            for (int i = 0; i < rangeCount; i++) {
+                CompletableFuture<List<String>> range = ranges.get(i);
+                if (range != null) {
+                    range.completeExceptionally(cause);
+                }
+            }
+            closeIdle();
+        }
+
+        private void closeIdle() {
+            Worker worker;
+            while ((worker = idle.poll()) != null) {
+                try {
+                    worker.document.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close PDF {}", file.getFileName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A loaded copy of the document with its stripper; PDFBox documents are not thread-safe,
+     * so a worker is used by one task at a time.
+     */
+    private static final class Worker {
+
+        private final PDDocument document;
+        private final PageCollector stripper;
+
+        private Worker(PDDocument document) throws IOException {
+            this.document = document;
+            try {
+                this.stripper = new PageCollector();
+            } catch (IOException | RuntimeException e) {
+                document.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Collects the text of each page separately while stripping a page range in one pass.
+     */
+    private static final class PageCollector extends PDFTextStripper {
+
+        private final StringWriter buffer = new StringWriter();
+        private List<String> pages;
+
+        private PageCollector() throws IOException {
+        }
+
+        List<String> extract(PDDocument document, int firstPage, int lastPage) throws IOException {
+            pages = new ArrayList<>(lastPage - firstPage + 1);
+            buffer.getBuffer().setLength(0);
+            setStartPage(firstPage);
+            setEndPage(lastPage);
+            writeText(document, buffer);
+            return pages;
+        }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+        @Override
+        protected void endPage(PDPage page) throws IOException {
+            super.endPage(page);
+            pages.add(buffer.toString());
+            buffer.getBuffer().setLength(0);
         }
     }
 }
@@ -0,0 +1,27 @@
+package org.example.notebooklm.util;
+
+/**
+ * Rough token counts for prompt budgeting, without a tokenizer:
+ * about four characters per token, which is close enough for sizing context.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Characters that make up about {@code tokens} tokens.
+     */
+    public static int chars(int tokens) {
+        return tokens * CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.notebooklm.util;
+
+/**
+ * Small vector helpers for in-process similarity checks.
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product of {@code query} with the row of {@code matrix} starting at {@code offset}
+     * (row length = query length). Unrolled by eight with independent accumulators so the
+     * JIT can keep several multiply-adds in flight and auto-vectorize the loop body.
+     */
+    public static float dotRow(float[] query, float[] matrix, int offset) {
+        int length = query.length;
+        int bound = length & ~7;
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f, s4 = 0f, s5 = 0f, s6 = 0f, s7 = 0f;
+        int i = 0;
+        for (; i < bound; i += 8) {
+            int j = offset + i;
+            s0 += query[i] * matrix[j];
+            s1 += query[i + 1] * matrix[j + 1];
+            s2 += query[i + 2] * matrix[j + 2];
+            s3 += query[i + 3] * matrix[j + 3];
+            s4 += query[i + 4] * matrix[j + 4];
+            s5 += query[i + 5] * matrix[j + 5];
+            s6 += query[i + 6] * matrix[j + 6];
+            s7 += query[i + 7] * matrix[j + 7];
+        }
+        for (; i < length; i++) {
+            s0 += query[i] * matrix[offset + i];
+        }
+        return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+    }
+
+    /**
+     * Returns a unit-length copy of {@code v} (or a zero vector if {@code v} is all zeros).
+     */
+    public static float[] normalize(float[] v) {
+        float norm = (float) Math.sqrt(dot(v, v));
+        float[] result = new float[v.length];
+        if (norm == 0f) {
+            return result;
+        }
+        for (int i = 0; i < v.length; i++) {
+            result[i] = v[i] / norm;
+        }
+        return result;
+    }
+
+    /**
+     * Cosine distance (1 - cosine similarity), matching pgvector's {@code <=>} operator.
+     */
+    public static double cosineDistance(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0 || normB == 0) {
+            return 1.0;
+        }
+        return 1.0 - dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
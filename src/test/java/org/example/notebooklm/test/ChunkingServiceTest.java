@@ -0,0 +1,93 @@
+package org.example.notebooklm.test;
+
+import org.example.notebooklm.service.ChunkingService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkingServiceTest {
+
+    // 20 טוקנים = 80 תווים לצ'אנק, ללא חפיפה
+    private final ChunkingService chunker = new ChunkingService(20, 0);
+
+    @Test
+    void testChunksEndAtSentenceBoundaries() {
+        String text = "The first sentence is here. The second sentence follows it. "
+                + "A third one comes next. And a fourth sentence closes the paragraph.";
+
+        List<String> chunks = chunker.chunk(text);
+
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 80, "Chunk exceeds the budget: " + chunk);
+            assertTrue(chunk.endsWith("."), "Chunk should end at a sentence: " + chunk);
+        }
+        assertEquals(text, String.join(" ", chunks));
+    }
+
+    @Test
+    void testParagraphBreakIsPreferredOverSentence() {
+        String text = "A short introduction about the topic at hand.\n\nBody text starts. It goes on for a while, "
+                + "and then it keeps going. More words.";
+
+        List<String> chunks = chunker.chunk(text);
+
+        assertEquals("A short introduction about the topic at hand.", chunks.get(0));
+    }
+
+    @Test
+    void testOverlapStartsAtWordBoundary() {
+        ChunkingService overlapping = new ChunkingService(20, 5);
+        String text = "alpha beta gamma delta epsilon zeta eta theta iota kappa lambda mu nu xi omicron "
+                + "pi rho sigma tau upsilon phi chi psi omega";
+
+        List<String> chunks = overlapping.chunk(text);
+
+        assertTrue(chunks.size() > 1);
+        for (int i = 1; i < chunks.size(); i++) {
+            String first = chunks.get(i).split(" ")[0];
+            assertTrue(text.contains(" " + first + " ") || text.endsWith(" " + first),
+                    "Chunk should start with a whole word: " + chunks.get(i));
+            assertTrue(chunks.get(i - 1).contains(first), "Chunk should overlap the previous one");
+        }
+    }
+
+    @Test
+    void testPagesAreReadLazily() {
+        List<String> pages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pages.add("Page " + i + " has a sentence of text. ");
+        }
+        int[] read = {0};
+        Iterator<String> source = new Iterator<>() {
+            private final Iterator<String> delegate = pages.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public String next() {
+                read[0]++;
+                return delegate.next();
+            }
+        };
+
+        Iterator<String> chunks = chunker.chunk(source);
+        chunks.next();
+
+        assertTrue(read[0] < 10, "Only the pages needed for the first chunk should be read");
+    }
+
+    @Test
+    void testLongWordIsCutAtTheBudget() {
+        List<String> chunks = chunker.chunk("x".repeat(200));
+
+        assertEquals(List.of("x".repeat(80), "x".repeat(80), "x".repeat(40)), chunks);
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.notebooklm.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.example.notebooklm.service.GeminiAnswerService;
+import org.example.notebooklm.service.SecretService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeminiAnswerStreamTest {
+
+    // השרת שולח אירוע אחד ואז "ממשיך לייצר" עד שהבדיקה משחררת אותו
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private GeminiAnswerService service;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(event("first"));
+                body.flush();
+                release.await(30, TimeUnit.SECONDS);
+                body.write(event("second"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // הלקוח ניתק את החיבור
+            }
+        });
+        server.start();
+
+        httpClient = HttpClients.createDefault();
+        String modelUrl = "http://localhost:" + server.getAddress().getPort() + "/v1/models/test";
+        service = new GeminiAnswerService(new SecretService("test-key", new StandardEnvironment()),
+                new RestTemplate(), new ObjectMapper(), httpClient, 60_000, 5_000, modelUrl);
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        release.countDown();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void testCancelledStreamReturnsWithoutReadingTheRest() {
+        List<String> received = new ArrayList<>();
+        boolean[] cancelled = {false};
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> service.streamAnswer("q", "c", text -> {
+            received.add(text);
+            cancelled[0] = true;
+        }, () -> cancelled[0]));
+
+        assertEquals(List.of("first"), received);
+    }
+
+    @Test
+    void testFailingConsumerAbortsTheStream() {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(IllegalStateException.class,
+                () -> service.streamAnswer("q", "c", text -> {
+                    throw new IllegalStateException("client disconnected");
+                }, () -> false)));
+    }
+
+    private static byte[] event(String text) {
+        return ("data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}]}}]}\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
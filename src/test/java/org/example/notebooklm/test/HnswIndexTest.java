@@ -0,0 +1,143 @@
+package org.example.notebooklm.test;
+
+import org.example.notebooklm.repository.HnswIndex;
+import org.example.notebooklm.util.VectorMath;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswIndexTest {
+
+    private static final int DIMENSIONS = 48;
+
+    @Test
+    void testRecallAgainstBruteForce() {
+        float[][] data = randomVectors(3000, 1);
+        HnswIndex index = build(data);
+
+        Random random = new Random(2);
+        double recall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random);
+            Set<Long> expected = bruteForce(data, query, 10);
+            Set<Long> found = new HashSet<>();
+            for (HnswIndex.Hit hit : index.search(query, 10, 64)) {
+                found.add(hit.getId());
+            }
+            found.retainAll(expected);
+            recall += found.size() / 10.0;
+        }
+
+        assertTrue(recall / queries >= 0.9, "recall@10 was " + recall / queries);
+    }
+
+    @Test
+    void testResultsAreSortedByDistance() {
+        float[][] data = randomVectors(500, 3);
+        HnswIndex index = build(data);
+
+        List<HnswIndex.Hit> hits = index.search(data[42], 5, 32);
+
+        assertEquals(5, hits.size());
+        assertEquals(42L, hits.get(0).getId());
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).getDistance() <= hits.get(i).getDistance());
+        }
+    }
+
+    @Test
+    void testRemovedEntriesAreNotReturned() {
+        float[][] data = randomVectors(800, 4);
+        HnswIndex index = build(data);
+        Set<Long> removed = new HashSet<>();
+        for (long id = 0; id < 800; id += 3) {
+            assertTrue(index.remove(id));
+            removed.add(id);
+        }
+
+        List<HnswIndex.Hit> hits = index.search(data[0], 10, 64);
+
+        assertEquals(10, hits.size());
+        for (HnswIndex.Hit hit : hits) {
+            assertFalse(removed.contains(hit.getId()));
+        }
+        assertEquals(800 - removed.size(), index.size());
+        assertEquals(800 - removed.size(), index.compact().size());
+        assertFalse(index.remove(0L));
+    }
+
+    @Test
+    void testSnapshotRoundTrip() throws Exception {
+        float[][] data = randomVectors(600, 5);
+        HnswIndex index = build(data);
+        index.remove(7L);
+        Path file = Files.createTempFile("hnsw-test", ".hnsw");
+        try {
+            index.writeSnapshot(file);
+            HnswIndex loaded = HnswIndex.readSnapshot(file);
+
+            assertEquals(index.size(), loaded.size());
+            assertEquals(1, loaded.deletedCount());
+            Random random = new Random(6);
+            for (int q = 0; q < 20; q++) {
+                float[] query = randomVector(random);
+                assertEquals(ids(index.search(query, 10, 40)), ids(loaded.search(query, 10, 40)));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static HnswIndex build(float[][] data) {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 12, 100, 99);
+        for (int i = 0; i < data.length; i++) {
+            index.add(i, i, data[i]);
+        }
+        return index;
+    }
+
+    private static Set<Long> bruteForce(float[][] data, float[] query, int k) {
+        Integer[] order = new Integer[data.length];
+        double[] distances = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            order[i] = i;
+            distances[i] = VectorMath.cosineDistance(query, data[i]);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < k; i++) {
+            ids.add((long) order[i]);
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(List<HnswIndex.Hit> hits) {
+        return hits.stream().map(HnswIndex.Hit::getId).toList();
+    }
+
+    private static float[][] randomVectors(int count, long seed) {
+        Random random = new Random(seed);
+        float[][] data = new float[count][];
+        for (int i = 0; i < count; i++) {
+            data[i] = randomVector(random);
+        }
+        return data;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] v = new float[DIMENSIONS];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = (float) random.nextGaussian();
+        }
+        return v;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.notebooklm.test;
+
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.service.MmrReranker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MmrRerankerTest {
+
+    private final MmrReranker reranker = new MmrReranker(true, 0.7, 0.92);
+
+    @Test
+    void testNearDuplicateIsReplacedByDiverseChunk() {
+        List<RetrievedChunk> candidates = List.of(
+                chunk(1L, 0.10, "a"), chunk(2L, 0.11, "a'"), chunk(3L, 0.20, "b"));
+        Map<Long, float[]> embeddings = Map.of(
+                1L, new float[]{1f, 0f, 0f},
+                2L, new float[]{0.99f, 0.05f, 0f},
+                3L, new float[]{0f, 1f, 0f});
+
+        List<RetrievedChunk> selected = reranker.rerank(candidates, embeddings, 2, 1000);
+
+        assertEquals(List.of(1L, 3L), selected.stream().map(RetrievedChunk::getId).toList());
+    }
+
+    @Test
+    void testTokenBudgetSkipsLargeChunks() {
+        List<RetrievedChunk> candidates = List.of(
+                chunk(1L, 0.10, "x".repeat(400)), chunk(2L, 0.12, "y".repeat(4000)), chunk(3L, 0.30, "z".repeat(40)));
+        Map<Long, float[]> embeddings = Map.of(
+                1L, new float[]{1f, 0f, 0f},
+                2L, new float[]{0f, 1f, 0f},
+                3L, new float[]{0f, 0f, 1f});
+
+        List<RetrievedChunk> selected = reranker.rerank(candidates, embeddings, 3, 200);
+
+        assertEquals(List.of(1L, 3L), selected.stream().map(RetrievedChunk::getId).toList());
+    }
+
+    @Test
+    void testChunksWithoutEmbeddingsKeepRelevanceOrder() {
+        List<RetrievedChunk> candidates = List.of(
+                chunk(1L, 0.10, "a"), chunk(2L, 0.20, "b"), chunk(3L, 0.30, "c"));
+
+        List<RetrievedChunk> selected = reranker.rerank(candidates, Map.of(), 2, 1000);
+
+        assertEquals(List.of(1L, 2L), selected.stream().map(RetrievedChunk::getId).toList());
+    }
+
+    @Test
+    void testLexicalTopHitSurvivesRankBasedRelevance() {
+        // סדר מאוחד: הראשון נמצא רק בחיפוש המילולי ורחוק וקטורית
+        List<RetrievedChunk> fused = List.of(
+                chunk(1L, 0.90, "keyword"), chunk(2L, 0.10, "a"), chunk(3L, 0.12, "b"), chunk(4L, 0.15, "c"));
+        Map<Long, float[]> embeddings = Map.of(
+                1L, new float[]{1f, 0f, 0f},
+                2L, new float[]{0f, 1f, 0f},
+                3L, new float[]{0f, 0f, 1f},
+                4L, new float[]{0f, 0.7f, 0.7f});
+
+        List<RetrievedChunk> selected = reranker.rerankByRank(fused, embeddings, 2, 1000);
+
+        assertEquals(List.of(1L, 2L), selected.stream().map(RetrievedChunk::getId).toList());
+        assertFalse(reranker.rerank(fused, embeddings, 2, 1000).contains(fused.get(0)),
+                "Distance-based relevance would drop the keyword hit");
+    }
+
+    private static RetrievedChunk chunk(Long id, double distance, String text) {
+        return new RetrievedChunk(id, 1L, id.intValue(), text, distance);
+    }
+}
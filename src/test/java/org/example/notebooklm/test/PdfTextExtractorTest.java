@@ -0,0 +1,126 @@
+package org.example.notebooklm.test;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.example.notebooklm.util.PdfTextExtractor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PdfTextExtractorTest {
+
+    private static final int THREADS = 2;
+
+    private ThreadPoolTaskExecutor executor;
+    private PdfTextExtractor extractor;
+    private Path first;
+    private Path second;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // כמו ב-ExecutorConfig: executor אחד בגודל ה-parallelism, משותף לכל העבודות
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(THREADS);
+        executor.setMaxPoolSize(THREADS);
+        executor.initialize();
+        extractor = new PdfTextExtractor(executor, THREADS, 1, 1, "");
+        first = generate(30);
+        second = generate(30);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        executor.shutdown();
+        Files.deleteIfExists(first);
+        Files.deleteIfExists(second);
+    }
+
+    @Test
+    void testSlowReaderDoesNotStarveAnotherStream() throws IOException {
+        try (PdfTextExtractor.PageStream slow = extractor.open(first)) {
+            // הקורא הראשון נעצר אחרי עמוד אחד, בזמן שהחלון שלו מלא
+            assertEquals("Page 1", slow.next().trim());
+
+            List<String> pages = assertTimeoutPreemptively(Duration.ofSeconds(20), () -> readAll(extractor.open(second)));
+            assertEquals(expectedPages(30), pages);
+
+            List<String> rest = new ArrayList<>();
+            slow.forEachRemaining(page -> rest.add(page.trim()));
+            assertEquals(expectedPages(30).subList(1, 30), rest);
+        }
+    }
+
+    @Test
+    void testConcurrentStreamsReturnPagesInOrder() throws Exception {
+        List<String> results = new ArrayList<>();
+        Thread other = new Thread(() -> {
+            try {
+                results.addAll(readAll(extractor.open(second)));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        other.start();
+        List<String> pages = assertTimeoutPreemptively(Duration.ofSeconds(20), () -> readAll(extractor.open(first)));
+        other.join(20_000);
+
+        assertEquals(expectedPages(30), pages);
+        assertEquals(expectedPages(30), results);
+    }
+
+    @Test
+    void testClosedStreamReleasesTheExecutor() throws IOException {
+        try (PdfTextExtractor.PageStream stream = extractor.open(first)) {
+            assertEquals("Page 1", stream.next().trim());
+        }
+        List<String> pages = assertTimeoutPreemptively(Duration.ofSeconds(20), () -> readAll(extractor.open(second)));
+        assertEquals(expectedPages(30), pages);
+    }
+
+    private static List<String> readAll(PdfTextExtractor.PageStream stream) {
+        List<String> pages = new ArrayList<>();
+        try (stream) {
+            stream.forEachRemaining(page -> pages.add(page.trim()));
+        }
+        return pages;
+    }
+
+    private static List<String> expectedPages(int count) {
+        List<String> pages = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            pages.add("Page " + i);
+        }
+        return pages;
+    }
+
+    private static Path generate(int pages) throws IOException {
+        Path file = Files.createTempFile("extractor-test-", ".pdf");
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + i);
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+}
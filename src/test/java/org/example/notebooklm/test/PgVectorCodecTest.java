@@ -0,0 +1,67 @@
+package org.example.notebooklm.test;
+
+import org.example.notebooklm.model.PgVectorCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PgVectorCodecTest {
+
+    @Test
+    void testRoundTripIsExact() {
+        Random random = new Random(42);
+        float[] vector = new float[768];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        vector[0] = 0.0f;
+        vector[1] = -0.0f;
+        vector[2] = 1.0e-7f;
+        vector[3] = Float.MIN_VALUE;
+
+        float[] parsed = PgVectorCodec.parse(PgVectorCodec.format(vector));
+
+        assertArrayEquals(vector, parsed);
+    }
+
+    @Test
+    void testFormatIgnoresDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals("[0.5,-1.25]", PgVectorCodec.format(new float[]{0.5f, -1.25f}));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void testParseMatchesParseFloat() {
+        Random random = new Random(7);
+        String[] samples = new String[20_000];
+        for (int i = 0; i < samples.length; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 8);
+            samples[i] = switch (i % 3) {
+                case 0 -> String.format(Locale.US, "%.10f", value);
+                case 1 -> Double.toString(value);
+                default -> Float.toString((float) value);
+            };
+        }
+
+        float[] parsed = PgVectorCodec.parse("[" + String.join(",", samples) + "]");
+
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(Float.parseFloat(samples[i]), parsed[i], 0.0f, samples[i]);
+        }
+    }
+
+    @Test
+    void testParseHandlesWhitespaceAndEmptyVectors() {
+        assertArrayEquals(new float[]{1.5f, -2.0f, 3.0e-5f}, PgVectorCodec.parse(" [1.5, -2,3e-5] "));
+        assertEquals(0, PgVectorCodec.parse("[]").length);
+        assertEquals(0, PgVectorCodec.parse(null).length);
+    }
+}
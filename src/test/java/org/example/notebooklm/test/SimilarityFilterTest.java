@@ -0,0 +1,56 @@
+package org.example.notebooklm.test;
+
+import org.example.notebooklm.log.RetrievalLogger;
+import org.example.notebooklm.model.RetrievedChunk;
+import org.example.notebooklm.service.SimilarityFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimilarityFilterTest {
+
+    private final SimilarityFilter filter = new SimilarityFilter(new RetrievalLogger(), 0.6, 0.15, 0.05, 2.5, 1);
+
+    @Test
+    void testAbsoluteCutoffCanDropEverything() {
+        List<RetrievedChunk> kept = filter.filterByDynamicThreshold(chunks(0.7, 0.75, 0.8));
+
+        assertTrue(kept.isEmpty(), "Chunks above the cutoff should be dropped");
+    }
+
+    @Test
+    void testRelativeGapFromBestHit() {
+        List<RetrievedChunk> kept = filter.filterByDynamicThreshold(chunks(0.20, 0.25, 0.30, 0.36, 0.40));
+
+        assertEquals(List.of(0, 1, 2), indexes(kept));
+    }
+
+    @Test
+    void testElbowCutsAfterLargestJump() {
+        List<RetrievedChunk> kept = filter.filterByDynamicThreshold(chunks(0.30, 0.31, 0.32, 0.40, 0.41, 0.42));
+
+        assertEquals(List.of(0, 1, 2), indexes(kept));
+    }
+
+    @Test
+    void testEvenlySpacedResultsAreKept() {
+        List<RetrievedChunk> kept = filter.filterByDynamicThreshold(chunks(0.30, 0.32, 0.34, 0.36, 0.38));
+
+        assertEquals(5, kept.size());
+    }
+
+    private static List<RetrievedChunk> chunks(double... distances) {
+        List<RetrievedChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < distances.length; i++) {
+            chunks.add(new RetrievedChunk((long) i, 1L, i, "chunk " + i, distances[i]));
+        }
+        return chunks;
+    }
+
+    private static List<Integer> indexes(List<RetrievedChunk> chunks) {
+        return chunks.stream().map(RetrievedChunk::getChunkIndex).toList();
+    }
+}